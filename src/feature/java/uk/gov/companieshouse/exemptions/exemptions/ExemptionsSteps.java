@@ -30,6 +30,7 @@ import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
 import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
 import uk.gov.companieshouse.exemptions.model.ResourceChangedRequest;
 import uk.gov.companieshouse.exemptions.service.ExemptionsApiService;
+import uk.gov.companieshouse.exemptions.service.ExemptionsCache;
 import uk.gov.companieshouse.exemptions.service.ExemptionsRepository;
 import uk.gov.companieshouse.exemptions.util.FileReaderUtil;
 
@@ -46,6 +47,9 @@ public class ExemptionsSteps {
     @Autowired
     private ExemptionsRepository exemptionsRepository;
 
+    @Autowired
+    private ExemptionsCache exemptionsCache;
+
     @Autowired
     protected TestRestTemplate restTemplate;
 
@@ -55,6 +59,7 @@ public class ExemptionsSteps {
             mongoDBContainer.start();
         }
         exemptionsRepository.deleteAll();
+        exemptionsCache.invalidateAll();
     }
 
     @Given("the company exemptions data api service is running")
@@ -102,6 +107,23 @@ public class ExemptionsSteps {
         CucumberContext.CONTEXT.set("getResponseBody", response.getBody());
     }
 
+    @When("a GET request is sent for company number {string} with If-None-Match {string}")
+    public void invokeConditionalCompanyExemptionsGetRequest(String companyNumber, String etag) {
+        this.contextId = "5234234234";
+        CucumberContext.CONTEXT.set("contextId", this.contextId);
+        final var headers = new HttpHeaders();
+        headers.set("x-request-id", this.contextId);
+        headers.set("ERIC-Identity", "TEST-IDENTITY");
+        headers.set("ERIC-Identity-Type", "KEY");
+        headers.setIfNoneMatch(String.format("\"%s\"", etag));
+        final var  request = new HttpEntity<>(null, headers);
+
+        final var uri = String.format("/company/%s/exemptions", companyNumber);
+        final ResponseEntity<CompanyExemptions> response = restTemplate.exchange(uri, HttpMethod.GET, request,
+                CompanyExemptions.class, companyNumber);
+        CucumberContext.CONTEXT.set("statusCode", response.getStatusCode().value());
+    }
+
     @Then("a response status code of {int} should be returned")
     public void verifyStatusCodeReturned(int statusCode) {
         int expectedStatusCode = CucumberContext.CONTEXT.get("statusCode");
@@ -12,6 +12,17 @@ Feature: Retrieves company exemption resource from the database
       | company_number  | file                              |
       | 00006400        | retrieved_exemptions_resource     |
 
+  Scenario Outline: Returns not modified when the client copy of the company exemptions resource is current
+
+    Given the company exemptions data api service is running
+    And exemptions exists for company number "<company_number>"
+    When a GET request is sent for company number "<company_number>" with If-None-Match "<etag>"
+    Then a response status code of 304 should be returned
+
+    Examples:
+      | company_number  | etag                                     |
+      | 00006400        | 5776376e7f99890d957f063aba9e13fdfef35cf1 |
+
   Scenario: 404 Error returned when attempting to retrieve a non-existent company exemptions resource from Mongo.
 
     Given the company exemptions data api service is running
@@ -6,12 +6,14 @@ import java.util.function.Supplier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
 import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
 import tools.jackson.databind.DeserializationFeature;
 import tools.jackson.databind.SerializationFeature;
 import tools.jackson.databind.json.JsonMapper;
 import uk.gov.companieshouse.api.InternalApiClient;
 import uk.gov.companieshouse.api.http.ApiKeyHttpClient;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
 import uk.gov.companieshouse.exemptions.util.ExemptionsReadConverter;
 import uk.gov.companieshouse.exemptions.util.ExemptionsWriteConverter;
 
@@ -34,6 +36,17 @@ public class Config {
         };
     }
 
+    /**
+     * Carries the logging context of a request over to work it hands to the application task
+     * executor, such as streaming response bodies, whether that runs on pooled or virtual threads.
+     *
+     * @return TaskDecorator.
+     */
+    @Bean
+    public TaskDecorator loggingContextTaskDecorator() {
+        return DataMapHolder::propagate;
+    }
+
     /**
      * mongoCustomConversions.
      *
@@ -2,18 +2,48 @@ package uk.gov.companieshouse.exemptions.controller;
 
 import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
 
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectMapper;
 import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
 import uk.gov.companieshouse.api.exemptions.InternalExemptionsApi;
+import uk.gov.companieshouse.exemptions.exception.BadRequestException;
 import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.exemptions.logging.RequestLog;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.model.ExemptionsBatchItem;
+import uk.gov.companieshouse.exemptions.model.ExemptionsBatchResult;
+import uk.gov.companieshouse.exemptions.model.ExemptionsLookupResult;
+import uk.gov.companieshouse.exemptions.service.ExemptionsExporter;
 import uk.gov.companieshouse.exemptions.service.ExemptionsService;
+import uk.gov.companieshouse.exemptions.util.BsonJsonWriter;
+import uk.gov.companieshouse.exemptions.util.ExemptionsRenderer;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
 
@@ -21,11 +51,28 @@ import uk.gov.companieshouse.logging.LoggerFactory;
 public class ExemptionsController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+    private static final String DATA = "data";
+    private static final String ETAG = "etag";
+    private static final String UPDATED = "updated";
+    private static final String AT = "at";
 
     private final ExemptionsService service;
+    private final ExemptionsExporter exporter;
+    private final ObjectMapper objectMapper;
+    private final int maximumBatchSize;
+    private final int maximumBulkGetSize;
+    private final boolean rawBsonGetEnabled;
 
-    public ExemptionsController(ExemptionsService service) {
+    public ExemptionsController(ExemptionsService service, ExemptionsExporter exporter, ObjectMapper objectMapper,
+            @Value("${exemptions.batch.maximum-size}") int maximumBatchSize,
+            @Value("${exemptions.bulk-get.maximum-size}") int maximumBulkGetSize,
+            @Value("${exemptions.get.raw-bson.enabled}") boolean rawBsonGetEnabled) {
         this.service = service;
+        this.exporter = exporter;
+        this.objectMapper = objectMapper;
+        this.maximumBatchSize = maximumBatchSize;
+        this.maximumBulkGetSize = maximumBulkGetSize;
+        this.rawBsonGetEnabled = rawBsonGetEnabled;
     }
 
     @PutMapping("/company-exemptions/{company_number}/internal")
@@ -34,20 +81,96 @@ public class ExemptionsController {
             @RequestBody InternalExemptionsApi requestBody) {
 
         DataMapHolder.get().companyNumber(companyNumber);
-        LOGGER.info("Processing upsert company exemptions", DataMapHolder.getLogMap());
+        RequestLog.info("Processing upsert company exemptions");
 
         service.upsertCompanyExemptions(companyNumber, requestBody);
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/company-exemptions/internal/batch")
+    public ResponseEntity<List<ExemptionsBatchResult>> companyExemptionsBatchUpsert(
+            @RequestBody List<ExemptionsBatchItem> requestBody) {
+
+        RequestLog.info(String.format("Processing batch upsert of %d company exemptions", requestBody.size()));
+
+        if (requestBody.size() > maximumBatchSize) {
+            LOGGER.error(String.format("Batch of %d exceeds the maximum of %d", requestBody.size(), maximumBatchSize),
+                    DataMapHolder.getLogMap());
+            throw new BadRequestException(String.format("Batch exceeds the maximum size of %d", maximumBatchSize));
+        }
+        return ResponseEntity.ok(service.upsertCompanyExemptionsBatch(requestBody));
+    }
+
     @GetMapping("/company/{company_number}/exemptions")
     public ResponseEntity<CompanyExemptions> companyExemptionsGet(
-            @PathVariable("company_number") String companyNumber) {
+            @PathVariable("company_number") String companyNumber, WebRequest webRequest,
+            HttpServletResponse servletResponse) throws IOException {
 
         DataMapHolder.get().companyNumber(companyNumber);
-        LOGGER.info("Processing GET company exemptions", DataMapHolder.getLogMap());
+        RequestLog.info("Processing GET company exemptions");
+
+        // Answer conditional requests from the etag and updated fields alone, so that a current
+        // client copy costs neither a full read nor serialisation of the body
+        if (isConditional(webRequest)) {
+            CompanyExemptionsDocument version = service.getCompanyExemptionsVersion(companyNumber);
+            if (webRequest.checkNotModified(getEtag(version), getLastModified(version))) {
+                return null;
+            }
+        }
+
+        // Write the stored BSON straight to the response, skipping the mapping to and from objects
+        if (rawBsonGetEnabled) {
+            writeRaw(service.getCompanyExemptionsRaw(companyNumber), servletResponse);
+            return null;
+        }
+
+        CompanyExemptionsDocument document = service.getCompanyExemptionsDocument(companyNumber);
+        if (document.getRendered() != null) {
+            writeRendered(document, acceptsGzip(webRequest), servletResponse);
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        String etag = getEtag(document);
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        long lastModified = getLastModified(document);
+        if (lastModified >= 0) {
+            response.lastModified(lastModified);
+        }
+        return response.body(document.getData());
+    }
+
+    @GetMapping("/company-exemptions")
+    public ResponseEntity<Map<String, ExemptionsLookupResult>> companyExemptionsBulkGet(
+            @RequestParam(name = "company_number", required = false) List<String> companyNumbers) {
+
+        RequestLog.info("Processing bulk GET company exemptions");
+
+        Set<String> requested = companyNumbers != null ? new LinkedHashSet<>(companyNumbers) : Set.of();
+        if (requested.isEmpty() || requested.size() > maximumBulkGetSize) {
+            throw new BadRequestException(String.format("Between 1 and %d company numbers must be requested",
+                    maximumBulkGetSize));
+        }
+
+        Map<String, CompanyExemptions> exemptions = service.getCompanyExemptions(requested);
+        Map<String, ExemptionsLookupResult> results = new LinkedHashMap<>();
+        requested.forEach(companyNumber -> results.put(companyNumber, exemptions.containsKey(companyNumber)
+                ? new ExemptionsLookupResult(HttpStatus.OK.value(), exemptions.get(companyNumber))
+                : new ExemptionsLookupResult(HttpStatus.NOT_FOUND.value(), null)));
+        return ResponseEntity.ok(results);
+    }
+
+    @GetMapping("/company-exemptions/internal/export")
+    public ResponseEntity<StreamingResponseBody> companyExemptionsExport(
+            @RequestParam(name = "after", required = false) String after) {
+
+        RequestLog.info("Processing export of company exemptions");
 
-        return ResponseEntity.ok().body(service.getCompanyExemptions(companyNumber));
+        // The body is written on the application task executor, which carries the logging context over
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> exporter.export(after, outputStream));
     }
 
     @DeleteMapping("/company-exemptions/{company_number}/internal")
@@ -56,9 +179,74 @@ public class ExemptionsController {
             @RequestHeader("X-DELTA-AT") String deltaAt) {
 
         DataMapHolder.get().companyNumber(companyNumber);
-        LOGGER.info("Processing DELETE company exemptions", DataMapHolder.getLogMap());
+        RequestLog.info("Processing DELETE company exemptions");
 
         service.deleteCompanyExemptions(companyNumber, deltaAt);
         return ResponseEntity.ok().build();
     }
-}
+
+    private void writeRaw(RawBsonDocument document, HttpServletResponse servletResponse) throws IOException {
+        // The service only returns documents that have data
+        BsonDocument data = document.getDocument(DATA);
+        writeHeaders(servletResponse,
+                data.isString(ETAG) ? data.getString(ETAG).getValue() : null,
+                document.isDocument(UPDATED) && document.getDocument(UPDATED).isDateTime(AT)
+                        ? document.getDocument(UPDATED).getDateTime(AT).getValue() : -1);
+        servletResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.createGenerator(servletResponse.getOutputStream())) {
+            BsonJsonWriter.write(data, generator);
+        }
+    }
+
+    private static void writeRendered(CompanyExemptionsDocument document, boolean gzipAccepted,
+            HttpServletResponse servletResponse) throws IOException {
+        writeHeaders(servletResponse, getEtag(document), getLastModified(document));
+        servletResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (ExemptionsRenderer.GZIP.equals(document.getRenderedEncoding())) {
+            servletResponse.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (gzipAccepted) {
+                servletResponse.setHeader(HttpHeaders.CONTENT_ENCODING, ExemptionsRenderer.GZIP);
+            }
+        }
+        ExemptionsRenderer.write(document, gzipAccepted, servletResponse.getOutputStream());
+    }
+
+    private static void writeHeaders(HttpServletResponse servletResponse, String etag, long lastModified) {
+        servletResponse.setStatus(HttpStatus.OK.value());
+        if (etag != null) {
+            servletResponse.setHeader(HttpHeaders.ETAG, ETag.quoteETagIfNecessary(etag));
+        }
+        if (lastModified >= 0) {
+            servletResponse.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        }
+    }
+
+    private static boolean acceptsGzip(WebRequest webRequest) {
+        String acceptEncoding = webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            if (parameters[0].trim().equalsIgnoreCase(ExemptionsRenderer.GZIP)) {
+                return parameters.length < 2 || !parameters[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static boolean isConditional(WebRequest webRequest) {
+        return webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || webRequest.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    private static String getEtag(CompanyExemptionsDocument document) {
+        return document.getData() != null ? document.getData().getEtag() : null;
+    }
+
+    private static long getLastModified(CompanyExemptionsDocument document) {
+        return document.getUpdated() != null && document.getUpdated().at() != null
+                ? document.getUpdated().at().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : -1;
+    }
+}
\ No newline at end of file
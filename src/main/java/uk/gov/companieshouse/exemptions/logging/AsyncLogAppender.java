@@ -0,0 +1,150 @@
+package uk.gov.companieshouse.exemptions.logging;
+
+import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.exemptions.util.RingBuffer;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Writes the routine log lines of requests on a background thread, so that log I/O is off the
+ * request path. Lines are queued in a bounded ring buffer; when it is full they are either
+ * dropped and counted, or the request thread waits for space, as configured. Lines still queued
+ * at shutdown are written before the application stops.
+ */
+@Component
+@ConditionalOnProperty(name = "exemptions.logging.async.enabled", havingValue = "true")
+public class AsyncLogAppender implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+    private static final String METRIC_PREFIX = "exemptions.logging.async";
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(5);
+
+    enum OverflowPolicy {
+        DROP, BLOCK
+    }
+
+    private record LogEvent(String message, Map<String, Object> data) {
+    }
+
+    private final RingBuffer<LogEvent> buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final Counter dropped;
+    private volatile boolean running;
+    private volatile boolean writerParked;
+    private volatile Thread writer;
+
+    public AsyncLogAppender(MeterRegistry meterRegistry,
+            @Value("${exemptions.logging.async.capacity}") int capacity,
+            @Value("${exemptions.logging.async.overflow-policy}") String overflowPolicy) {
+        this.buffer = new RingBuffer<>(capacity);
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.toUpperCase(Locale.ROOT));
+        this.dropped = Counter.builder(METRIC_PREFIX + ".dropped").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".queued", buffer, RingBuffer::size).register(meterRegistry);
+    }
+
+    /**
+     * Queues a line to be logged.
+     *
+     * @return false if the appender has stopped and the caller must log the line itself
+     */
+    boolean append(String message, Map<String, Object> data) {
+        LogEvent event = new LogEvent(message, data);
+        while (running) {
+            if (buffer.offer(event)) {
+                if (writerParked) {
+                    LockSupport.unpark(writer);
+                }
+                return true;
+            }
+            if (overflowPolicy == OverflowPolicy.DROP) {
+                dropped.increment();
+                return true;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("exemptions-log-writer").daemon().start(this::write);
+        RequestLog.install(this);
+    }
+
+    @Override
+    public synchronized void stop() {
+        RequestLog.uninstall(this);
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            if (!writer.join(STOP_TIMEOUT)) {
+                LOGGER.error(String.format("Log writer did not finish within %s", STOP_TIMEOUT),
+                        DataMapHolder.getLogMap());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the web server, so that requests always have the appender.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Writes queued lines until stopped. An idle writer parks until a line is appended, having
+     * first flagged that it is parked and checked the buffer again, so that an append racing with
+     * it either is seen by that check or sees the flag and wakes it.
+     */
+    private void write() {
+        while (true) {
+            LogEvent event = buffer.poll();
+            if (event != null) {
+                writeEvent(event);
+            } else if (buffer.size() > 0) {
+                // A line has been claimed but not yet added
+                Thread.onSpinWait();
+            } else if (!running) {
+                return;
+            } else {
+                writerParked = true;
+                if (buffer.size() == 0 && running) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+            }
+        }
+    }
+
+    private static void writeEvent(LogEvent event) {
+        try {
+            LOGGER.info(event.message(), event.data());
+        } catch (RuntimeException ex) {
+            // A line that cannot be written must not stop the lines after it
+            LOGGER.error("Failed to write log line", ex, event.data());
+        }
+    }
+}
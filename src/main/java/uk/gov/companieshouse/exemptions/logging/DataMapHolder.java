@@ -1,35 +1,56 @@
 package uk.gov.companieshouse.exemptions.logging;
 
 import java.util.Map;
-import uk.gov.companieshouse.logging.util.DataMap.Builder;
 
 public class DataMapHolder {
 
-    private static final ThreadLocal<Builder> DATAMAP_BUILDER
-            = ThreadLocal.withInitial(() -> new Builder().requestId("uninitialised"));
+    private static final ThreadLocal<LogContext> LOG_CONTEXT
+            = ThreadLocal.withInitial(() -> new LogContext("uninitialised"));
 
     public static void initialise(String requestId) {
-        DATAMAP_BUILDER.get().requestId(requestId);
+        LOG_CONTEXT.get().requestId(requestId);
     }
 
     private DataMapHolder() {
     }
 
     public static void clear() {
-        DATAMAP_BUILDER.remove();
+        LOG_CONTEXT.remove();
     }
 
-    public static Builder get() {
-        return DATAMAP_BUILDER.get();
+    public static LogContext get() {
+        return LOG_CONTEXT.get();
     }
 
     public static Map<String, Object> getLogMap() {
-        return DATAMAP_BUILDER.get()
-                .build()
-                .getLogMap();
+        return LOG_CONTEXT.get().getLogMap();
     }
 
     public static String getRequestId() {
-        return (String) getLogMap().get("request_id");
+        return LOG_CONTEXT.get().getRequestId();
+    }
+
+    /**
+     * Wraps a task handed to another thread so that it logs with the request id and company number
+     * of the thread that created it. The context is cleared when the task ends, as threads may be
+     * pooled, or virtual and never reused.
+     *
+     * @param task the task to run
+     * @return the task with the current logging context
+     */
+    public static Runnable propagate(Runnable task) {
+        final LogContext context = LOG_CONTEXT.get();
+        final String requestId = context.getRequestId();
+        final String companyNumber = context.getCompanyNumber();
+        final boolean sampled = context.isSampled();
+        return () -> {
+            initialise(requestId);
+            get().companyNumber(companyNumber).sampled(sampled);
+            try {
+                task.run();
+            } finally {
+                clear();
+            }
+        };
     }
 }
@@ -0,0 +1,76 @@
+package uk.gov.companieshouse.exemptions.logging;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import uk.gov.companieshouse.logging.util.DataMap.Builder;
+
+/**
+ * The logging context of a request. The log map is built once and rebuilt only after a field
+ * changes, and the request id is read directly rather than from a built map.
+ */
+public final class LogContext {
+
+    private String requestId;
+    private String companyNumber;
+    private Map<String, Object> logMap;
+    private boolean sampled = true;
+
+    LogContext(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public LogContext requestId(String requestId) {
+        if (!Objects.equals(this.requestId, requestId)) {
+            this.requestId = requestId;
+            this.logMap = null;
+        }
+        return this;
+    }
+
+    public LogContext companyNumber(String companyNumber) {
+        if (!Objects.equals(this.companyNumber, companyNumber)) {
+            this.companyNumber = companyNumber;
+            this.logMap = null;
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether the request's routine log lines are written, which a sampled out request
+     * skips. Errors are logged either way.
+     */
+    public LogContext sampled(boolean sampled) {
+        this.sampled = sampled;
+        return this;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public String getCompanyNumber() {
+        return companyNumber;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Returns the log map of the context. Each caller gets its own copy of the cached map, as the
+     * logger adds the message and any error to the map it is given.
+     *
+     * @return a mutable copy of the log map
+     */
+    public Map<String, Object> getLogMap() {
+        if (logMap == null) {
+            Builder builder = new Builder().requestId(requestId);
+            if (companyNumber != null) {
+                builder.companyNumber(companyNumber);
+            }
+            logMap = builder.build().getLogMap();
+        }
+        return new HashMap<>(logMap);
+    }
+}
@@ -0,0 +1,56 @@
+package uk.gov.companieshouse.exemptions.logging;
+
+import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+
+import java.util.Map;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Logs the routine INFO lines of a request, such as what it is processing.
+ * They are skipped for a sampled out request, and written on the request thread unless an
+ * {@link AsyncLogAppender} is running. Errors are not routine and are logged directly.
+ */
+public final class RequestLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+
+    private static volatile AsyncLogAppender appender;
+
+    private RequestLog() {
+    }
+
+    /**
+     * Logs the message with the current logging context, unless the request is sampled out.
+     */
+    public static void info(String message) {
+        LogContext context = DataMapHolder.get();
+        if (context.isSampled()) {
+            log(message, context.getLogMap());
+        }
+    }
+
+    /**
+     * Logs the message with the given data, whether or not the request is sampled out.
+     */
+    static void log(String message, Map<String, Object> data) {
+        AsyncLogAppender current = appender;
+        if (current == null || !current.append(message, data)) {
+            LOGGER.info(message, data);
+        }
+    }
+
+    static boolean isAsync() {
+        return appender != null;
+    }
+
+    static void install(AsyncLogAppender asyncLogAppender) {
+        appender = asyncLogAppender;
+    }
+
+    static void uninstall(AsyncLogAppender asyncLogAppender) {
+        if (appender == asyncLogAppender) {
+            appender = null;
+        }
+    }
+}
@@ -12,13 +12,22 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
 import uk.gov.companieshouse.logging.util.RequestLogger;
 
+/**
+ * Logs the start and end of each request. A GET is logged for a sample of requests only, as
+ * configured, and writes are always logged. A failed request that was sampled out is still logged
+ * by the exception handler. The start and end lines are written on the request thread, as they
+ * are formatted from the request itself; the routine lines in between go through {@link RequestLog}.
+ */
 @Component
 @Order(value = HIGHEST_PRECEDENCE)
 public class RequestLoggingFilter extends OncePerRequestFilter implements RequestLogger {
@@ -26,18 +35,30 @@ public class RequestLoggingFilter extends OncePerRequestFilter implements Reques
     private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
     private static final String HEALTHCHECK_PATH = "/healthcheck"; // NOSONAR
 
+    private final double getSampleRate;
+
+    public RequestLoggingFilter(@Value("${exemptions.logging.get-sample-rate}") double getSampleRate) {
+        this.getSampleRate = getSampleRate;
+    }
+
     @Override
     protected void doFilterInternal(@Nonnull HttpServletRequest request,
             @Nonnull HttpServletResponse response,
             @Nonnull FilterChain filterChain) throws ServletException, IOException {
-        logStartRequestProcessing(request, LOGGER);
+        final boolean sampled = isSampled(request);
+        if (sampled) {
+            logStartRequestProcessing(request, LOGGER);
+        }
         DataMapHolder.initialise(Optional
                 .ofNullable(request.getHeader(REQUEST_ID.value()))
                 .orElse(UUID.randomUUID().toString()));
+        DataMapHolder.get().sampled(sampled);
         try {
             filterChain.doFilter(request, response);
         } finally {
-            logEndRequestProcessing(request, response, LOGGER);
+            if (sampled) {
+                logEndRequestProcessing(request, response, LOGGER);
+            }
             DataMapHolder.clear();
         }
     }
@@ -46,5 +67,10 @@ public class RequestLoggingFilter extends OncePerRequestFilter implements Reques
     protected boolean shouldNotFilter(HttpServletRequest request) {
         return HEALTHCHECK_PATH.equals(request.getRequestURI());
     }
-}
 
+    private boolean isSampled(HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod())
+                || getSampleRate >= 1.0
+                || ThreadLocalRandom.current().nextDouble() < getSampleRate;
+    }
+}
@@ -1,5 +1,6 @@
 package uk.gov.companieshouse.exemptions.model;
 
+import java.util.Arrays;
 import java.util.Objects;
 import javax.persistence.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -19,8 +20,26 @@ public class CompanyExemptionsDocument {
     @Field("delta_at")
     private String deltaAt;
 
+    /**
+     * The delta_at in microseconds since the epoch, for numeric comparison. Absent on documents
+     * written before it was introduced and not yet backfilled.
+     */
+    @Field("delta_at_micros")
+    private Long deltaAtMicros;
+
     private Updated updated;
 
+    /**
+     * The data as the JSON body of a GET response, rendered when the document was written.
+     */
+    private byte[] rendered;
+
+    /**
+     * The content coding of the rendered body, either gzip or identity.
+     */
+    @Field("rendered_encoding")
+    private String renderedEncoding;
+
     public String getId() {
         return id;
     }
@@ -57,6 +76,15 @@ public class CompanyExemptionsDocument {
         return this;
     }
 
+    public Long getDeltaAtMicros() {
+        return deltaAtMicros;
+    }
+
+    public CompanyExemptionsDocument setDeltaAtMicros(Long deltaAtMicros) {
+        this.deltaAtMicros = deltaAtMicros;
+        return this;
+    }
+
     public Updated getUpdated() {
         return updated;
     }
@@ -66,6 +94,24 @@ public class CompanyExemptionsDocument {
         return this;
     }
 
+    public byte[] getRendered() {
+        return rendered;
+    }
+
+    public CompanyExemptionsDocument setRendered(byte[] rendered) {
+        this.rendered = rendered;
+        return this;
+    }
+
+    public String getRenderedEncoding() {
+        return renderedEncoding;
+    }
+
+    public CompanyExemptionsDocument setRenderedEncoding(String renderedEncoding) {
+        this.renderedEncoding = renderedEncoding;
+        return this;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -75,11 +121,11 @@ public class CompanyExemptionsDocument {
             return false;
         }
         CompanyExemptionsDocument document = (CompanyExemptionsDocument) o;
-        return Objects.equals(id, document.id) && Objects.equals(created, document.created) && Objects.equals(data, document.data) && Objects.equals(deltaAt, document.deltaAt) && Objects.equals(updated, document.updated);
+        return Objects.equals(id, document.id) && Objects.equals(created, document.created) && Objects.equals(data, document.data) && Objects.equals(deltaAt, document.deltaAt) && Objects.equals(deltaAtMicros, document.deltaAtMicros) && Objects.equals(updated, document.updated) && Arrays.equals(rendered, document.rendered) && Objects.equals(renderedEncoding, document.renderedEncoding);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, created, data, deltaAt, updated);
+        return 31 * Objects.hash(id, created, data, deltaAt, deltaAtMicros, updated, renderedEncoding) + Arrays.hashCode(rendered);
     }
 }
@@ -0,0 +1,7 @@
+package uk.gov.companieshouse.exemptions.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record ExemptionsBatchResult(@JsonProperty("company_number") String companyNumber,
+                                    @JsonProperty("status") int status) {
+}
@@ -0,0 +1,8 @@
+package uk.gov.companieshouse.exemptions.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
+
+public record ExemptionsExportItem(@JsonProperty("company_number") String companyNumber,
+                                   @JsonProperty("exemptions") CompanyExemptions exemptions) {
+}
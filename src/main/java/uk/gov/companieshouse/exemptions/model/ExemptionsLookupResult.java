@@ -0,0 +1,8 @@
+package uk.gov.companieshouse.exemptions.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
+
+public record ExemptionsLookupResult(@JsonProperty("status") int status,
+                                     @JsonProperty("exemptions") CompanyExemptions exemptions) {
+}
@@ -0,0 +1,128 @@
+package uk.gov.companieshouse.exemptions.model;
+
+import java.time.Instant;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
+
+/**
+ * A resource-changed notification recorded in the same transaction as the exemptions change it
+ * describes, and removed once it has been published to chs-kafka-api.
+ */
+@Document(collection = "company_exemptions_outbox")
+public class ResourceChangedOutboxEntry {
+
+    @Id
+    private String id;
+
+    @Field("company_number")
+    private String companyNumber;
+
+    @Field("is_delete")
+    private boolean delete;
+
+    @Field("deleted_data")
+    private CompanyExemptions deletedData;
+
+    @Field("request_id")
+    private String requestId;
+
+    @Field("created_at")
+    private Instant createdAt;
+
+    @Field("next_attempt_at")
+    private Instant nextAttemptAt;
+
+    private int attempts;
+
+    @Field("parked_at")
+    private Instant parkedAt;
+
+    public String getId() {
+        return id;
+    }
+
+    public ResourceChangedOutboxEntry setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getCompanyNumber() {
+        return companyNumber;
+    }
+
+    public ResourceChangedOutboxEntry setCompanyNumber(String companyNumber) {
+        this.companyNumber = companyNumber;
+        return this;
+    }
+
+    public boolean isDelete() {
+        return delete;
+    }
+
+    public ResourceChangedOutboxEntry setDelete(boolean delete) {
+        this.delete = delete;
+        return this;
+    }
+
+    public CompanyExemptions getDeletedData() {
+        return deletedData;
+    }
+
+    public ResourceChangedOutboxEntry setDeletedData(CompanyExemptions deletedData) {
+        this.deletedData = deletedData;
+        return this;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public ResourceChangedOutboxEntry setRequestId(String requestId) {
+        this.requestId = requestId;
+        return this;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public ResourceChangedOutboxEntry setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+        return this;
+    }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public ResourceChangedOutboxEntry setNextAttemptAt(Instant nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+        return this;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public ResourceChangedOutboxEntry setAttempts(int attempts) {
+        this.attempts = attempts;
+        return this;
+    }
+
+    public Instant getParkedAt() {
+        return parkedAt;
+    }
+
+    public ResourceChangedOutboxEntry setParkedAt(Instant parkedAt) {
+        this.parkedAt = parkedAt;
+        return this;
+    }
+
+    public ResourceChangedRequest toResourceChangedRequest() {
+        return delete
+                ? new ResourceChangedRequest(companyNumber, new CompanyExemptionsDocument().setData(deletedData), true)
+                : new ResourceChangedRequest(companyNumber, null, false);
+    }
+}
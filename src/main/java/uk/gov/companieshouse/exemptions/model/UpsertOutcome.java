@@ -0,0 +1,7 @@
+package uk.gov.companieshouse.exemptions.model;
+
+public enum UpsertOutcome {
+    UPSERTED,
+    STALE,
+    FAILED
+}
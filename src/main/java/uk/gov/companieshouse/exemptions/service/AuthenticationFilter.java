@@ -54,11 +54,21 @@ public class AuthenticationFilter extends OncePerRequestFilter {
     private boolean isKeyAuthorised(HttpServletRequest request, String ericIdentityType) {
         String[] privileges = getApiKeyPrivileges(request);
 
-        return request.getMethod().equals("GET")
+        return (request.getMethod().equals("GET") && !isInternal(request))
                 || (ericIdentityType.equalsIgnoreCase("key")
                 && ArrayUtils.contains(privileges, "internal-app"));
     }
 
+    /**
+     * Internal endpoints, such as the export, and the metrics endpoint are reserved for
+     * internal-app keys even when read-only.
+     */
+    private boolean isInternal(HttpServletRequest request) {
+        String[] segments = StringUtils.split(request.getRequestURI(), '/');
+        return ArrayUtils.contains(segments, "internal")
+                || (ArrayUtils.isNotEmpty(segments) && "metrics".equals(segments[0]));
+    }
+
     private String[] getApiKeyPrivileges(HttpServletRequest request) {
         String commaSeparatedPrivilegeString = request.getHeader("ERIC-Authorised-Key-Privileges");
 
@@ -0,0 +1,79 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.exemptions.util.CircuitBreaker;
+import uk.gov.companieshouse.exemptions.util.CircuitBreaker.State;
+
+/**
+ * Circuit breaker for resource-changed calls to chs-kafka-api, so that while it is failing
+ * writes are refused at once rather than each holding a request thread until the call times out.
+ * Its state is published as a gauge per state, set to 1 for the current one.
+ */
+@Component
+public class ChsKafkaApiCircuitBreaker {
+
+    private static final String METRIC_PREFIX = "chs.kafka.api.circuit";
+
+    private final boolean enabled;
+    private final CircuitBreaker circuitBreaker;
+    private final Counter rejected;
+
+    public ChsKafkaApiCircuitBreaker(
+            @Value("${chs.kafka.api.circuit-breaker.enabled}") boolean enabled,
+            @Value("${chs.kafka.api.circuit-breaker.window-size}") int windowSize,
+            @Value("${chs.kafka.api.circuit-breaker.minimum-calls}") int minimumCalls,
+            @Value("${chs.kafka.api.circuit-breaker.failure-rate-threshold}") double failureRateThreshold,
+            @Value("${chs.kafka.api.circuit-breaker.open-duration}") Duration openDuration,
+            @Value("${chs.kafka.api.circuit-breaker.half-open-calls}") int halfOpenCalls,
+            @Value("${chs.kafka.api.circuit-breaker.half-open-timeout}") Duration halfOpenTimeout,
+            Supplier<Instant> instantSupplier, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openDuration,
+                halfOpenCalls, halfOpenTimeout, instantSupplier);
+        for (State state : State.values()) {
+            Gauge.builder(METRIC_PREFIX + ".state", circuitBreaker, breaker -> breaker.getState() == state ? 1 : 0)
+                    .tag("state", state.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        this.rejected = Counter.builder(METRIC_PREFIX + ".rejected").register(meterRegistry);
+    }
+
+    /**
+     * @return the permit for the call, or {@link CircuitBreaker#REFUSED}; a refused call is counted
+     */
+    public long tryAcquire() {
+        if (!enabled) {
+            return 0;
+        }
+        long permit = circuitBreaker.tryAcquire();
+        if (permit == CircuitBreaker.REFUSED) {
+            rejected.increment();
+        }
+        return permit;
+    }
+
+    public void onSuccess(long permit) {
+        if (enabled) {
+            circuitBreaker.onSuccess(permit);
+        }
+    }
+
+    public void onFailure(long permit) {
+        if (enabled) {
+            circuitBreaker.onFailure(permit);
+        }
+    }
+
+    public void onIgnored(long permit) {
+        if (enabled) {
+            circuitBreaker.onIgnored(permit);
+        }
+    }
+}
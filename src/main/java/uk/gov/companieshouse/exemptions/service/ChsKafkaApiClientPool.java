@@ -0,0 +1,94 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.api.InternalApiClient;
+import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Bounded pool of long-lived chs-kafka-api clients. A client is lent to one call at a time, so
+ * the request id set on its HTTP client is never shared between concurrent requests. Clients are
+ * created on demand up to the maximum size and reused most recently released first.
+ */
+@Component
+public class ChsKafkaApiClientPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+    private static final String METRIC_PREFIX = "chs.kafka.api.client.pool";
+
+    private final Supplier<InternalApiClient> clientFactory;
+    private final Deque<InternalApiClient> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore permits;
+    private final int maximumSize;
+    private final Duration borrowTimeout;
+    private final Counter borrowTimeouts;
+
+    public ChsKafkaApiClientPool(Supplier<InternalApiClient> internalApiClientSupplier,
+            @Value("${chs.kafka.api.client-pool.maximum-size}") int maximumSize,
+            @Value("${chs.kafka.api.client-pool.borrow-timeout}") Duration borrowTimeout,
+            MeterRegistry meterRegistry) {
+        this.clientFactory = internalApiClientSupplier;
+        this.permits = new Semaphore(maximumSize, true);
+        this.maximumSize = maximumSize;
+        this.borrowTimeout = borrowTimeout;
+        Gauge.builder(METRIC_PREFIX + ".active", this, ChsKafkaApiClientPool::getActive)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".idle", idle, Deque::size)
+                .register(meterRegistry);
+        this.borrowTimeouts = Counter.builder(METRIC_PREFIX + ".borrow.timeouts")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Borrows a client, waiting up to the borrow timeout for one to be released when all are in
+     * use. The client must be handed back with {@link #release}.
+     *
+     * @throws ServiceUnavailableException if no client became available in time
+     */
+    public InternalApiClient borrow() {
+        try {
+            if (!permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.increment();
+                LOGGER.info("Timed out waiting for a chs-kafka-api client", DataMapHolder.getLogMap());
+                throw new ServiceUnavailableException("No chs-kafka-api client available");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted waiting for a chs-kafka-api client");
+        }
+
+        InternalApiClient client = idle.pollFirst();
+        if (client == null) {
+            try {
+                client = clientFactory.get();
+            } catch (RuntimeException ex) {
+                permits.release();
+                throw ex;
+            }
+        }
+        return client;
+    }
+
+    public void release(InternalApiClient client) {
+        idle.offerFirst(client);
+        permits.release();
+    }
+
+    int getActive() {
+        return maximumSize - permits.availablePermits();
+    }
+}
@@ -0,0 +1,100 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.api.InternalApiClient;
+import uk.gov.companieshouse.api.chskafka.ChangedResource;
+import uk.gov.companieshouse.api.error.ApiErrorResponseException;
+import uk.gov.companieshouse.api.handler.chskafka.request.PrivateChangedResourcePost;
+import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.exemptions.util.CircuitBreaker;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Publishes resource-changed events by posting them to chs-kafka-api.
+ */
+@Component
+public class ChsKafkaApiResourceChangedPublisher implements ResourceChangedPublisher {
+
+    private static final String CHANGED_RESOURCE_URI = "/private/resource-changed";
+    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+
+    private final ChsKafkaApiClientPool clientPool;
+    private final ChsKafkaApiCircuitBreaker circuitBreaker;
+    private final ChsKafkaApiRetrier retrier;
+
+    public ChsKafkaApiResourceChangedPublisher(ChsKafkaApiClientPool clientPool,
+            ChsKafkaApiCircuitBreaker circuitBreaker, ChsKafkaApiRetrier retrier) {
+        this.clientPool = clientPool;
+        this.circuitBreaker = circuitBreaker;
+        this.retrier = retrier;
+    }
+
+    @Override
+    public void publish(ChangedResource changedResource) {
+        try {
+            retrier.execute(() -> attemptPostChangedResource(changedResource));
+        } catch (ApiErrorResponseException ex) {
+            LOGGER.info("Resource changed call failed: %s".formatted(ex.getStatusCode()), DataMapHolder.getLogMap());
+            throw new ServiceUnavailableException("Error calling resource changed endpoint");
+        }
+    }
+
+    /**
+     * Posts the changed resource once, unless the circuit breaker is open. The client pool bounds
+     * the number of calls in flight, so that a slow chs-kafka-api cannot hold every request thread.
+     */
+    private void attemptPostChangedResource(ChangedResource changedResource) throws ApiErrorResponseException {
+        long permit = circuitBreaker.tryAcquire();
+        if (permit == CircuitBreaker.REFUSED) {
+            LOGGER.info("Resource changed call refused as the circuit is open", DataMapHolder.getLogMap());
+            throw new ServiceUnavailableException("chs-kafka-api circuit is open");
+        }
+        InternalApiClient internalApiClient;
+        try {
+            internalApiClient = clientPool.borrow();
+        } catch (RuntimeException ex) {
+            circuitBreaker.onIgnored(permit);
+            throw ex;
+        }
+        try {
+            internalApiClient.getHttpClient().setRequestId(DataMapHolder.getRequestId());
+
+            PrivateChangedResourcePost changedResourcePost =
+                    internalApiClient.privateChangedResourceHandler().postChangedResource(
+                            CHANGED_RESOURCE_URI, changedResource);
+            changedResourcePost.execute();
+            circuitBreaker.onSuccess(permit);
+        } catch (ApiErrorResponseException | RuntimeException ex) {
+            // An attempt the retrier gave up on, for a hedge that won or the deadline, is
+            // interrupted; how it ended says nothing about chs-kafka-api
+            if (isInterrupted(ex)) {
+                circuitBreaker.onIgnored(permit);
+            } else {
+                circuitBreaker.onFailure(permit);
+            }
+            throw ex;
+        } finally {
+            clientPool.release(internalApiClient);
+        }
+    }
+
+    private static boolean isInterrupted(Exception ex) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            // A socket timeout is an InterruptedIOException too, but is a failure of the call
+            if (cause instanceof InterruptedException
+                    || cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,226 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.api.error.ApiErrorResponseException;
+import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+
+/**
+ * Retries resource-changed calls to chs-kafka-api that fail with a retryable status, so that a
+ * transient error does not fail the write and have the whole delta redelivered. Retries back off
+ * exponentially with full jitter, and stop once the next would start after the deadline. No
+ * attempt is waited on past the deadline.
+ *
+ * <p>With hedging enabled, an attempt still running after the configured percentile of recent
+ * call latencies is raced by a second one, and the first to succeed is taken. Consumers of
+ * resource-changed events must already tolerate duplicates, as delivery is at least once.
+ */
+@Component
+public class ChsKafkaApiRetrier {
+
+    private static final String METRIC_PREFIX = "chs.kafka.api";
+
+    /**
+     * A call to chs-kafka-api.
+     */
+    @FunctionalInterface
+    public interface Attempt {
+
+        void run() throws ApiErrorResponseException;
+    }
+
+    private final int maximumAttempts;
+    private final Duration initialBackoff;
+    private final Duration maximumBackoff;
+    private final List<Integer> retryableStatusCodes;
+    private final Duration deadline;
+    private final boolean hedgeEnabled;
+    private final Duration hedgeMinimumDelay;
+    private final Timer calls;
+    private final Counter retries;
+    private final Counter hedges;
+    private final ExecutorService attemptExecutor;
+
+    public ChsKafkaApiRetrier(
+            @Value("${chs.kafka.api.retry.maximum-attempts}") int maximumAttempts,
+            @Value("${chs.kafka.api.retry.initial-backoff}") Duration initialBackoff,
+            @Value("${chs.kafka.api.retry.maximum-backoff}") Duration maximumBackoff,
+            @Value("${chs.kafka.api.retry.retryable-status-codes}") List<Integer> retryableStatusCodes,
+            @Value("${chs.kafka.api.retry.deadline}") Duration deadline,
+            @Value("${chs.kafka.api.hedge.enabled}") boolean hedgeEnabled,
+            @Value("${chs.kafka.api.hedge.percentile}") double hedgePercentile,
+            @Value("${chs.kafka.api.hedge.minimum-delay}") Duration hedgeMinimumDelay,
+            MeterRegistry meterRegistry) {
+        this.maximumAttempts = maximumAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maximumBackoff = maximumBackoff;
+        this.retryableStatusCodes = retryableStatusCodes;
+        this.deadline = deadline;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeMinimumDelay = hedgeMinimumDelay;
+        this.calls = Timer.builder(METRIC_PREFIX + ".calls")
+                .publishPercentiles(hedgePercentile)
+                .register(meterRegistry);
+        this.retries = Counter.builder(METRIC_PREFIX + ".retries").register(meterRegistry);
+        this.hedges = Counter.builder(METRIC_PREFIX + ".hedges").register(meterRegistry);
+        this.attemptExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Runs the attempt, retrying it while it fails with a retryable status and the deadline
+     * allows. Any other exception is thrown at once.
+     *
+     * @throws ApiErrorResponseException the failure of the last attempt
+     */
+    public void execute(Attempt attempt) throws ApiErrorResponseException {
+        final long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                run(attempt, deadlineNanos);
+                return;
+            } catch (ApiErrorResponseException ex) {
+                long backoffNanos = backoffNanos(attemptNumber);
+                if (attemptNumber >= maximumAttempts || !retryableStatusCodes.contains(ex.getStatusCode())
+                        || System.nanoTime() + backoffNanos >= deadlineNanos) {
+                    throw ex;
+                }
+                retries.increment();
+                sleep(backoffNanos);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        attemptExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs the attempt on a virtual thread, hedged if enabled, and waits for it no longer than
+     * the deadline. Attempts still running on return are interrupted, which closes the socket
+     * they are blocked on, so that they give their pool client back at once.
+     */
+    private void run(Attempt attempt, long deadlineNanos) throws ApiErrorResponseException {
+        CompletionService<Void> completions = new ExecutorCompletionService<>(attemptExecutor);
+        List<Future<Void>> running = new ArrayList<>(2);
+        try {
+            running.add(submit(completions, attempt));
+            boolean hedged = !hedgeEnabled;
+            while (true) {
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                Future<Void> completed = poll(completions,
+                        hedged ? remainingNanos : Math.min(hedgeDelayNanos(), remainingNanos));
+                if (completed == null) {
+                    if (hedged || remainingNanos <= 0) {
+                        throw new ServiceUnavailableException("Deadline exceeded calling resource changed endpoint");
+                    }
+                    hedges.increment();
+                    running.add(submit(completions, attempt));
+                    hedged = true;
+                    continue;
+                }
+                running.remove(completed);
+                try {
+                    outcome(completed);
+                    return;
+                } catch (ApiErrorResponseException | RuntimeException ex) {
+                    if (running.isEmpty()) {
+                        throw ex;
+                    }
+                }
+            }
+        } finally {
+            running.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private void runTimed(Attempt attempt) throws ApiErrorResponseException {
+        final long start = System.nanoTime();
+        try {
+            attempt.run();
+        } finally {
+            calls.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Future<Void> submit(CompletionService<Void> completions, Attempt attempt) {
+        return completions.submit(DataMapHolder.propagate(() -> {
+            try {
+                runTimed(attempt);
+            } catch (ApiErrorResponseException ex) {
+                throw new CompletionException(ex);
+            }
+        }), null);
+    }
+
+    private static Future<Void> poll(CompletionService<Void> completions, long timeoutNanos) {
+        try {
+            return completions.poll(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted calling resource changed endpoint");
+        }
+    }
+
+    private static void outcome(Future<Void> completed) throws ApiErrorResponseException {
+        try {
+            completed.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() instanceof CompletionException completion
+                    ? completion.getCause() : ex.getCause();
+            if (cause instanceof ApiErrorResponseException apiErrorResponseException) {
+                throw apiErrorResponseException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted calling resource changed endpoint");
+        }
+    }
+
+    /**
+     * Returns the configured percentile of recent call latencies, or the minimum delay if that
+     * is longer or there are no recent calls.
+     */
+    private long hedgeDelayNanos() {
+        ValueAtPercentile[] percentiles = calls.takeSnapshot().percentileValues();
+        long percentileNanos = percentiles.length > 0 ? (long) percentiles[0].value(TimeUnit.NANOSECONDS) : 0;
+        return Math.max(percentileNanos, hedgeMinimumDelay.toNanos());
+    }
+
+    private long backoffNanos(int attemptNumber) {
+        long ceiling = Math.min(maximumBackoff.toNanos(),
+                initialBackoff.toNanos() << Math.min(attemptNumber - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted retrying resource changed endpoint");
+        }
+    }
+}
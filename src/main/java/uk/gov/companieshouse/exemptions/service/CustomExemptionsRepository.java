@@ -0,0 +1,105 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.bson.RawBsonDocument;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.model.UpsertOutcome;
+
+public interface CustomExemptionsRepository {
+
+    /**
+     * Inserts or replaces the exemptions document with a single conditional upsert, unless the
+     * stored document has a later delta_at. The created field of an existing document is
+     * preserved, and one without it is given the delta's updated time, as on insert.
+     *
+     * @param document the document to write
+     * @return false if the write was rejected because the stored document is newer
+     */
+    boolean upsertIfNotStale(CompanyExemptionsDocument document);
+
+    /**
+     * Applies {@link #upsertIfNotStale(CompanyExemptionsDocument)} to many documents with a single
+     * unordered bulk write. The documents must have distinct ids.
+     *
+     * @param documents the documents to write
+     * @return the outcome for each document, keyed by id
+     */
+    Map<String, UpsertOutcome> upsertAllIfNotStale(List<CompanyExemptionsDocument> documents);
+
+    /**
+     * Streams the documents with an id after the given one, in id order, through a cursor that
+     * fetches the given number of documents per round trip. The stream must be closed.
+     *
+     * @param after the id to continue after, or null to start from the first document
+     * @param cursorBatchSize the number of documents fetched per round trip
+     * @return the documents
+     */
+    Stream<CompanyExemptionsDocument> streamAllAfter(String after, int cursorBatchSize);
+
+    /**
+     * Streams the id of every document with an index-only scan of the _id index.
+     * The stream must be closed.
+     *
+     * @param cursorBatchSize the number of ids fetched per round trip
+     * @return the document ids
+     */
+    Stream<String> streamAllIds(int cursorBatchSize);
+
+    /**
+     * Streams the id of every document created at or after the given instant, through the
+     * created.at index. The stream must be closed.
+     *
+     * @param since the earliest creation time to include
+     * @param cursorBatchSize the number of ids fetched per round trip
+     * @return the document ids
+     */
+    Stream<String> streamIdsCreatedSince(Instant since, int cursorBatchSize);
+
+    /**
+     * Creates the created.at index used by {@link #streamIdsCreatedSince}, if it does not exist.
+     */
+    void createCreatedAtIndex();
+
+    /**
+     * Creates the delta_at_micros index, which also serves {@link #findWithoutDeltaAtMicros}, if it
+     * does not exist.
+     */
+    void createDeltaAtMicrosIndex();
+
+    /**
+     * Reads the data and updated fields of a document as undecoded BSON, bypassing the mapping to
+     * {@link CompanyExemptionsDocument}.
+     *
+     * @param id the document id
+     * @return the document, if it exists
+     */
+    Optional<RawBsonDocument> findRawById(String id);
+
+    /**
+     * Finds documents with a delta_at but no numeric delta_at_micros, in id order, reading only
+     * their id and delta_at.
+     *
+     * @param after the id to continue after, or null to start from the first document
+     * @param limit the maximum number of documents to return
+     * @return the documents
+     */
+    List<CompanyExemptionsDocument> findWithoutDeltaAtMicros(String after, int limit);
+
+    /**
+     * Sets delta_at_micros on each document whose delta_at is still the one given, with a single
+     * unordered bulk write.
+     *
+     * @param documents the ids, delta_at strings and delta_at_micros to set
+     * @return the number of documents updated
+     */
+    int backfillDeltaAtMicros(List<CompanyExemptionsDocument> documents);
+
+    /**
+     * Returns the number of documents from the collection metadata, without scanning.
+     */
+    long estimatedCount();
+}
@@ -0,0 +1,265 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.LiteralOperators;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.model.Created;
+import uk.gov.companieshouse.exemptions.model.UpsertOutcome;
+
+public class CustomExemptionsRepositoryImpl implements CustomExemptionsRepository {
+
+    private static final String ID = "_id";
+    private static final String DELTA_AT = "delta_at";
+    private static final String DELTA_AT_MICROS = "delta_at_micros";
+    private static final String ID_INDEX = "_id_";
+    private static final String DATA = "data";
+    private static final String UPDATED = "updated";
+    private static final String RENDERED = "rendered";
+    private static final String RENDERED_ENCODING = "rendered_encoding";
+    private static final String CREATED = "created";
+    private static final String CREATED_AT = "created.at";
+
+    private final MongoTemplate mongoTemplate;
+
+    public CustomExemptionsRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public boolean upsertIfNotStale(CompanyExemptionsDocument document) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // A write error aborts a Mongo transaction, so a stale delta is detected up front
+            // rather than from the duplicate key raised by the upsert. A concurrent change fails
+            // the transaction with a write conflict.
+            if (mongoTemplate.exists(staleQuery(document), CompanyExemptionsDocument.class)) {
+                return false;
+            }
+            mongoTemplate.upsert(notStaleQuery(document), upsertUpdate(document), CompanyExemptionsDocument.class);
+            return true;
+        }
+        try {
+            mongoTemplate.upsert(notStaleQuery(document), upsertUpdate(document), CompanyExemptionsDocument.class);
+            return true;
+        } catch (DuplicateKeyException firstAttempt) {
+            // Either the stored document is newer, so the filter did not match and the upsert
+            // tried to insert a second document with the same id, or a concurrent upsert inserted
+            // the document first. The document now exists, so a second duplicate key means stale.
+            try {
+                mongoTemplate.upsert(notStaleQuery(document), upsertUpdate(document), CompanyExemptionsDocument.class);
+                return true;
+            } catch (DuplicateKeyException secondAttempt) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public Map<String, UpsertOutcome> upsertAllIfNotStale(List<CompanyExemptionsDocument> documents) {
+        Map<String, UpsertOutcome> outcomes = new HashMap<>();
+        List<CompanyExemptionsDocument> pending = documents;
+
+        // As for a single upsert, a duplicate key is retried once before it is taken to mean stale
+        for (int attempt = 0; attempt < 2 && !pending.isEmpty(); attempt++) {
+            pending = bulkUpsert(pending, outcomes);
+        }
+        pending.forEach(document -> outcomes.put(document.getId(), UpsertOutcome.STALE));
+        return outcomes;
+    }
+
+    @Override
+    public Stream<CompanyExemptionsDocument> streamAllAfter(String after, int cursorBatchSize) {
+        return mongoTemplate.stream(afterQuery(after).cursorBatchSize(cursorBatchSize), CompanyExemptionsDocument.class);
+    }
+
+    @Override
+    public Stream<String> streamAllIds(int cursorBatchSize) {
+        Query query = new Query().withHint(ID_INDEX).cursorBatchSize(cursorBatchSize);
+        query.fields().include(ID);
+        return mongoTemplate.stream(query, Document.class, mongoTemplate.getCollectionName(CompanyExemptionsDocument.class))
+                .map(document -> document.getString(ID));
+    }
+
+    @Override
+    public Stream<String> streamIdsCreatedSince(Instant since, int cursorBatchSize) {
+        Query query = createdSinceQuery(since).cursorBatchSize(cursorBatchSize);
+        return mongoTemplate.stream(query, Document.class, mongoTemplate.getCollectionName(CompanyExemptionsDocument.class))
+                .map(document -> document.getString(ID));
+    }
+
+    @Override
+    public void createCreatedAtIndex() {
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(CompanyExemptionsDocument.class))
+                .createIndex(Indexes.ascending(CREATED_AT));
+    }
+
+    @Override
+    public void createDeltaAtMicrosIndex() {
+        // Serves both range queries on delta_at_micros and the backfill's walk in id order
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(CompanyExemptionsDocument.class))
+                .createIndex(Indexes.ascending(DELTA_AT_MICROS, ID));
+    }
+
+    @Override
+    public Optional<RawBsonDocument> findRawById(String id) {
+        return Optional.ofNullable(mongoTemplate.execute(CompanyExemptionsDocument.class,
+                collection -> collection.withDocumentClass(RawBsonDocument.class)
+                        .find(Filters.eq(ID, id))
+                        .projection(Projections.include(DATA, UPDATED))
+                        .first()));
+    }
+
+    @Override
+    public List<CompanyExemptionsDocument> findWithoutDeltaAtMicros(String after, int limit) {
+        return mongoTemplate.find(withoutDeltaAtMicrosQuery(after, limit), CompanyExemptionsDocument.class);
+    }
+
+    @Override
+    public int backfillDeltaAtMicros(List<CompanyExemptionsDocument> documents) {
+        if (documents.isEmpty()) {
+            return 0;
+        }
+        // Only documents whose delta_at is unchanged since it was read are updated, so that a
+        // concurrent upsert is never given the numeric form of an older delta_at
+        BulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, CompanyExemptionsDocument.class);
+        documents.forEach(document -> operations.updateOne(
+                Query.query(where(ID).is(document.getId())
+                        .and(DELTA_AT).is(document.getDeltaAt())
+                        .and(DELTA_AT_MICROS).exists(false)),
+                new Update().set(DELTA_AT_MICROS, document.getDeltaAtMicros())));
+        return operations.execute().getModifiedCount();
+    }
+
+    @Override
+    public long estimatedCount() {
+        return mongoTemplate.estimatedCount(CompanyExemptionsDocument.class);
+    }
+
+    private List<CompanyExemptionsDocument> bulkUpsert(List<CompanyExemptionsDocument> documents,
+            Map<String, UpsertOutcome> outcomes) {
+        BulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, CompanyExemptionsDocument.class);
+        documents.forEach(document -> operations.upsert(notStaleQuery(document), upsertUpdate(document)));
+
+        Map<Integer, BulkWriteError> errors = new HashMap<>();
+        try {
+            operations.execute();
+        } catch (BulkOperationException ex) {
+            ex.getErrors().forEach(error -> errors.put(error.getIndex(), error));
+        }
+
+        List<CompanyExemptionsDocument> duplicates = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            CompanyExemptionsDocument document = documents.get(i);
+            BulkWriteError error = errors.get(i);
+            if (error == null) {
+                outcomes.put(document.getId(), UpsertOutcome.UPSERTED);
+            } else if (ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                duplicates.add(document);
+            } else {
+                outcomes.put(document.getId(), UpsertOutcome.FAILED);
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Matches the document unless it has a delta_at later than the given document's. The
+     * fixed-width yyyyMMddHHmmssSSSSSS format of delta_at sorts chronologically as a string.
+     */
+    static Query notStaleQuery(CompanyExemptionsDocument document) {
+        if (document.getDeltaAtMicros() == null) {
+            return Query.query(where(ID).is(document.getId())
+                    .orOperator(where(DELTA_AT).is(null), where(DELTA_AT).lte(document.getDeltaAt())));
+        }
+        // Documents not yet backfilled with the numeric delta_at are compared on the string
+        return Query.query(where(ID).is(document.getId()).orOperator(
+                where(DELTA_AT_MICROS).lte(document.getDeltaAtMicros()),
+                new Criteria().andOperator(where(DELTA_AT_MICROS).is(null), new Criteria()
+                        .orOperator(where(DELTA_AT).is(null), where(DELTA_AT).lte(document.getDeltaAt())))));
+    }
+
+    static Query staleQuery(CompanyExemptionsDocument document) {
+        if (document.getDeltaAtMicros() == null) {
+            return Query.query(where(ID).is(document.getId()).and(DELTA_AT).gt(document.getDeltaAt()));
+        }
+        return Query.query(where(ID).is(document.getId()).orOperator(
+                where(DELTA_AT_MICROS).gt(document.getDeltaAtMicros()),
+                new Criteria().andOperator(where(DELTA_AT_MICROS).is(null), where(DELTA_AT).gt(document.getDeltaAt()))));
+    }
+
+    static Query withoutDeltaAtMicrosQuery(String after, int limit) {
+        Criteria criteria = where(DELTA_AT_MICROS).exists(false).and(DELTA_AT).type(BsonType.STRING.getValue()).ne("");
+        if (after != null) {
+            criteria.and(ID).gt(after);
+        }
+        Query query = Query.query(criteria).with(Sort.by(ID)).limit(limit);
+        query.fields().include(ID, DELTA_AT);
+        return query;
+    }
+
+    static Query createdSinceQuery(Instant since) {
+        // created.at is stored as a BSON date, so is compared with the instant rather than a local time
+        Query query = Query.query(where(CREATED_AT).gte(Date.from(since)));
+        query.fields().include(ID);
+        return query;
+    }
+
+    static Query afterQuery(String after) {
+        Query query = after != null ? Query.query(where(ID).gt(after)) : new Query();
+        query.fields().exclude(RENDERED, RENDERED_ENCODING);
+        return query.with(Sort.by(ID));
+    }
+
+    /**
+     * Replaces the document fields with a pipeline update, so that created can be kept when the
+     * document has one and given one when it does not, whether it is inserted or was stored
+     * before created was recorded. The data is passed as a literal, so that none of its strings
+     * are read as field paths.
+     */
+    static AggregationUpdate upsertUpdate(CompanyExemptionsDocument document) {
+        SetOperation set = SetOperation.set(DATA).toValue(LiteralOperators.valueOf(document.getData()).asLiteral())
+                .and().set(DELTA_AT).toValue(document.getDeltaAt())
+                .and().set(DELTA_AT_MICROS).toValue(document.getDeltaAtMicros())
+                .and().set(UPDATED).toValue(document.getUpdated())
+                .and().set(CREATED).toValue(ConditionalOperators.ifNull(CREATED).then(created(document)));
+        // A rendering of the previous data must not outlive it
+        if (document.getRendered() != null) {
+            return AggregationUpdate.update().set(set.and().set(RENDERED).toValue(document.getRendered())
+                    .and().set(RENDERED_ENCODING).toValue(document.getRenderedEncoding()));
+        }
+        return AggregationUpdate.update().set(set).unset(RENDERED, RENDERED_ENCODING);
+    }
+
+    private static Created created(CompanyExemptionsDocument document) {
+        return new Created().setAt(document.getUpdated().at());
+    }
+}
@@ -0,0 +1,86 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.util.DateUtils;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Backfills delta_at_micros on documents written before it was introduced, one batch per poll so
+ * that the migration adds a bounded load to the database. The collection is walked once in id
+ * order; documents written since carry the numeric field already. Running it on several
+ * instances at once is safe, as a document is only updated while it still lacks the field. The
+ * walk is served by the delta_at_micros index, which {@link ExemptionsIndexes} creates.
+ */
+@Component
+@ConditionalOnProperty(name = "exemptions.delta-at-backfill.enabled", havingValue = "true")
+public class DeltaAtMicrosBackfill {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+    private static final String METRIC_PREFIX = "exemptions.delta.at.backfill";
+
+    private final ExemptionsRepository repository;
+    private final int batchSize;
+    private final Counter backfilled;
+    private final Counter invalid;
+    private volatile String lastId;
+    private volatile boolean complete;
+
+    public DeltaAtMicrosBackfill(ExemptionsRepository repository, MeterRegistry meterRegistry,
+            @Value("${exemptions.delta-at-backfill.batch-size}") int batchSize) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.backfilled = Counter.builder(METRIC_PREFIX + ".documents").register(meterRegistry);
+        this.invalid = Counter.builder(METRIC_PREFIX + ".invalid").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${exemptions.delta-at-backfill.interval}")
+    public void backfillNextBatch() {
+        if (complete) {
+            return;
+        }
+        try {
+            List<CompanyExemptionsDocument> batch = repository.findWithoutDeltaAtMicros(lastId, batchSize);
+            if (batch.isEmpty()) {
+                complete = true;
+                LOGGER.info("Backfill of delta_at_micros is complete", DataMapHolder.getLogMap());
+                return;
+            }
+
+            List<CompanyExemptionsDocument> updates = new ArrayList<>(batch.size());
+            for (CompanyExemptionsDocument document : batch) {
+                try {
+                    updates.add(new CompanyExemptionsDocument()
+                            .setId(document.getId())
+                            .setDeltaAt(document.getDeltaAt())
+                            .setDeltaAtMicros(DateUtils.deltaAtMicros(document.getDeltaAt())));
+                } catch (IllegalArgumentException ex) {
+                    // Left to the string comparison, as before the numeric field was introduced
+                    invalid.increment();
+                    LOGGER.error(String.format("Cannot backfill delta_at_micros for company %s: %s",
+                            document.getId(), ex.getMessage()), DataMapHolder.getLogMap());
+                }
+            }
+            backfilled.increment(repository.backfillDeltaAtMicros(updates));
+            lastId = batch.getLast().getId();
+        } catch (DataAccessException ex) {
+            LOGGER.error("Failed to backfill delta_at_micros", ex, DataMapHolder.getLogMap());
+        }
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+}
@@ -1,69 +1,32 @@
 package uk.gov.companieshouse.exemptions.service;
 
-import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
-
-import java.util.function.Supplier;
 import org.springframework.stereotype.Component;
-import uk.gov.companieshouse.api.InternalApiClient;
-import uk.gov.companieshouse.api.error.ApiErrorResponseException;
-import uk.gov.companieshouse.api.handler.chskafka.request.PrivateChangedResourcePost;
-import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
-import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
 import uk.gov.companieshouse.exemptions.model.ResourceChangedRequest;
 import uk.gov.companieshouse.exemptions.util.ResourceChangedRequestMapper;
-import uk.gov.companieshouse.logging.Logger;
-import uk.gov.companieshouse.logging.LoggerFactory;
 
 @Component
 public class ExemptionsApiService {
 
-    private static final String CHANGED_RESOURCE_URI = "/private/resource-changed";
-    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
-
-    private final Supplier<InternalApiClient> apiClientSupplier;
+    private final ResourceChangedPublisher publisher;
     private final ResourceChangedRequestMapper mapper;
 
     /**
      * Invoke API.
      */
-    public ExemptionsApiService(Supplier<InternalApiClient> apiClientSupplier, ResourceChangedRequestMapper mapper) {
-        this.apiClientSupplier = apiClientSupplier;
+    public ExemptionsApiService(ResourceChangedPublisher publisher, ResourceChangedRequestMapper mapper) {
+        this.publisher = publisher;
         this.mapper = mapper;
     }
 
-
     /**
-     * Calls the CHS Kafka api.
+     * Publishes a changed event for the company exemption.
      * @param resourceChangedRequest encapsulates details relating to the updated or deleted company exemption
-     * @return The service status of the response from chs kafka api
      */
     public void invokeChsKafkaApi(ResourceChangedRequest resourceChangedRequest) {
-        InternalApiClient internalApiClient = apiClientSupplier.get();
-        internalApiClient.getHttpClient().setRequestId(DataMapHolder.getRequestId());
-
-        PrivateChangedResourcePost changedResourcePost =
-                internalApiClient.privateChangedResourceHandler().postChangedResource(
-                        CHANGED_RESOURCE_URI, mapper.mapChangedEvent(resourceChangedRequest));
-        try {
-            changedResourcePost.execute();
-        } catch (ApiErrorResponseException ex) {
-            LOGGER.info("Resource changed call failed: %s".formatted(ex.getStatusCode()), DataMapHolder.getLogMap());
-            throw new ServiceUnavailableException("Error calling resource changed endpoint");
-        }
+        publisher.publish(mapper.mapChangedEvent(resourceChangedRequest));
     }
 
     public void invokeChsKafkaApiDelete(ResourceChangedRequest resourceChangedRequest) {
-        InternalApiClient internalApiClient = apiClientSupplier.get();
-        internalApiClient.getHttpClient().setRequestId(DataMapHolder.getRequestId());
-
-        PrivateChangedResourcePost changedResourcePost =
-                internalApiClient.privateChangedResourceHandler().postChangedResource(
-                        CHANGED_RESOURCE_URI, mapper.mapDeletedEvent(resourceChangedRequest));
-        try {
-            changedResourcePost.execute();
-        } catch (ApiErrorResponseException ex) {
-            LOGGER.info("Resource changed call failed: %s".formatted(ex.getStatusCode()), DataMapHolder.getLogMap());
-            throw new ServiceUnavailableException("Error calling resource changed endpoint");
-        }
+        publisher.publish(mapper.mapDeletedEvent(resourceChangedRequest));
     }
 }
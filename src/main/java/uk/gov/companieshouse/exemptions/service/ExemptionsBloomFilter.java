@@ -0,0 +1,256 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+
+import com.mongodb.MongoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.exemptions.util.BloomFilter;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Bloom filter of the company numbers in company_exemptions, used to answer reads for companies
+ * without exemptions without querying Mongo. Until the first build completes, or when disabled,
+ * every company is reported as possibly present.
+ *
+ * <p>Each node holds its own filter. A node adds a company number before writing its document,
+ * so it never rejects a document it wrote itself. Documents written by other nodes are picked up
+ * by a sync that reads the ids created since the last sync, so another node's new company can be
+ * rejected for up to one sync interval after it is written. If syncs stop succeeding, or are held
+ * up behind a rebuild, the filter stops rejecting anything until one does, rather than serve
+ * rejections that grow staler.
+ *
+ * <p>Deleted companies stay in the filter until the next periodic rebuild, which costs only a
+ * wasted read. Adds made while a rebuild scans the collection are journaled and replayed into the
+ * new filter before it replaces the old one. The rebuild and the sync run in turn on a thread of
+ * their own, so that a long rebuild does not hold up other scheduled work.
+ */
+@Component
+public class ExemptionsBloomFilter implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+    private static final String METRIC_PREFIX = "exemptions.bloom.filter";
+    // Room for companies added between rebuilds without exceeding the configured fpp
+    private static final double GROWTH_HEADROOM = 1.25;
+    // Sync intervals that may pass without a successful sync before rejections are suspended
+    private static final int STALE_SYNC_INTERVALS = 3;
+
+    private final ExemptionsRepository repository;
+    private final Supplier<Instant> instantSupplier;
+    private final boolean enabled;
+    private final long minimumExpectedInsertions;
+    private final double fpp;
+    private final Duration writeGrace;
+    private final int cursorBatchSize;
+    private final Duration rebuildInterval;
+    private final Duration syncInterval;
+    private final Map<String, Instant> recentAdds = new ConcurrentHashMap<>();
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final Timer rebuildTimer;
+    private final Counter rebuildFailures;
+    private final Counter syncFailures;
+    private final Counter rejections;
+    private volatile BloomFilter filter;
+    private volatile Instant rebuildStartedAt;
+    private volatile Instant syncedAt;
+    private Instant coveredSince;
+    private ScheduledExecutorService executor;
+
+    public ExemptionsBloomFilter(ExemptionsRepository repository, Supplier<Instant> instantSupplier,
+            MeterRegistry meterRegistry,
+            @Value("${exemptions.bloom-filter.enabled}") boolean enabled,
+            @Value("${exemptions.bloom-filter.expected-insertions}") long minimumExpectedInsertions,
+            @Value("${exemptions.bloom-filter.fpp}") double fpp,
+            @Value("${exemptions.bloom-filter.write-grace}") Duration writeGrace,
+            @Value("${exemptions.bloom-filter.cursor-batch-size}") int cursorBatchSize,
+            @Value("${exemptions.bloom-filter.rebuild-interval}") Duration rebuildInterval,
+            @Value("${exemptions.bloom-filter.sync-interval}") Duration syncInterval) {
+        this.repository = repository;
+        this.instantSupplier = instantSupplier;
+        this.enabled = enabled;
+        this.minimumExpectedInsertions = minimumExpectedInsertions;
+        this.fpp = fpp;
+        this.writeGrace = writeGrace;
+        this.cursorBatchSize = cursorBatchSize;
+        this.rebuildInterval = rebuildInterval;
+        this.syncInterval = syncInterval;
+        this.rebuildTimer = Timer.builder(METRIC_PREFIX + ".rebuild").register(meterRegistry);
+        this.rebuildFailures = Counter.builder(METRIC_PREFIX + ".rebuild.failures").register(meterRegistry);
+        this.syncFailures = Counter.builder(METRIC_PREFIX + ".sync.failures").register(meterRegistry);
+        this.rejections = Counter.builder(METRIC_PREFIX + ".rejections").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".expected.fpp", this, ExemptionsBloomFilter::expectedFpp)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns false only if the company had no exemptions document as of the last sync, or was
+     * not written through this node since.
+     */
+    public boolean mightContain(String companyNumber) {
+        BloomFilter current = filter;
+        if (current == null || isStale() || current.mightContain(companyNumber)) {
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    /**
+     * Records that a document is about to be written for the company. Must be called before the
+     * write so that the document cannot be read while the filter still rejects it.
+     */
+    public void add(String companyNumber) {
+        if (!enabled) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            recentAdds.put(companyNumber, instantSupplier.get());
+            BloomFilter current = filter;
+            if (current != null) {
+                current.put(companyNumber);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            repository.createCreatedAtIndex();
+        } catch (MongoException | DataAccessException ex) {
+            LOGGER.error("Failed to create the created.at index, bloom filter syncs will scan the collection", ex,
+                    DataMapHolder.getLogMap());
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("exemptions-bloom-filter").daemon().factory());
+        executor.scheduleWithFixedDelay(this::rebuild, 0, rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::sync, syncInterval.toMillis(), syncInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    /**
+     * Builds a new filter from an index-only scan of the collection and swaps it in. Runs at
+     * startup and then periodically, clearing out companies deleted since the last build.
+     */
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        Instant startedAt = instantSupplier.get();
+        rebuildStartedAt = startedAt;
+        Timer.Sample sample = Timer.start();
+        try {
+            long expectedInsertions = Math.max(minimumExpectedInsertions,
+                    (long) (repository.estimatedCount() * GROWTH_HEADROOM));
+            BloomFilter rebuilt = new BloomFilter(expectedInsertions, fpp);
+            try (Stream<String> companyNumbers = repository.streamAllIds(cursorBatchSize)) {
+                companyNumbers.forEach(rebuilt::put);
+            }
+
+            swapLock.writeLock().lock();
+            try {
+                recentAdds.keySet().forEach(rebuilt::put);
+                filter = rebuilt;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            synced(startedAt);
+            LOGGER.info(String.format("Rebuilt exemptions bloom filter of %d bits for %d companies",
+                    rebuilt.bitSize(), expectedInsertions), DataMapHolder.getLogMap());
+        } catch (RuntimeException ex) {
+            // Caught broadly, as an exception escaping a scheduled run cancels the ones after it
+            rebuildFailures.increment();
+            LOGGER.error("Failed to rebuild exemptions bloom filter", ex, DataMapHolder.getLogMap());
+        } finally {
+            sample.stop(rebuildTimer);
+            rebuildStartedAt = null;
+            pruneRecentAdds();
+        }
+    }
+
+    /**
+     * Adds the companies created since the last rebuild or sync, including those written by other
+     * nodes. Each sync reads back over the write grace before the last one, so that it also finds
+     * writes that were in flight then, or stamped by a node whose clock is behind.
+     */
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            Instant startedAt = instantSupplier.get();
+            try (Stream<String> companyNumbers = repository.streamIdsCreatedSince(coveredSince, cursorBatchSize)) {
+                companyNumbers.forEach(current::put);
+                synced(startedAt);
+            } catch (RuntimeException ex) {
+                syncFailures.increment();
+                LOGGER.error("Failed to sync exemptions bloom filter", ex, DataMapHolder.getLogMap());
+            }
+        }
+        pruneRecentAdds();
+    }
+
+    /**
+     * Forgets adds old enough that their writes are visible to any scan starting now, or to the
+     * scan in progress.
+     */
+    public void pruneRecentAdds() {
+        Instant scanStartedAt = rebuildStartedAt;
+        Instant cutoff = (scanStartedAt != null ? scanStartedAt : instantSupplier.get()).minus(writeGrace);
+        recentAdds.values().removeIf(addedAt -> addedAt.isBefore(cutoff));
+    }
+
+    private void synced(Instant startedAt) {
+        coveredSince = startedAt.minus(writeGrace);
+        syncedAt = startedAt;
+    }
+
+    private boolean isStale() {
+        Instant lastSynced = syncedAt;
+        return lastSynced == null
+                || lastSynced.plus(syncInterval.multipliedBy(STALE_SYNC_INTERVALS)).isBefore(instantSupplier.get());
+    }
+
+    private double expectedFpp() {
+        BloomFilter current = filter;
+        return current != null ? current.expectedFpp() : Double.NaN;
+    }
+}
@@ -0,0 +1,142 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.util.SingleFlight;
+
+/**
+ * Bounded, in-process read-through cache of exemptions documents keyed by company number.
+ * Hit, miss and eviction statistics are published to the meter registry under the
+ * {@value #CACHE_NAME} cache name. Concurrent misses for the same company share one load, and
+ * the number of misses that did so is published as {@value #COALESCED_METRIC}.
+ */
+@Component
+public class ExemptionsCache {
+
+    static final String CACHE_NAME = "company-exemptions";
+    static final String COALESCED_METRIC = "cache.loads.coalesced";
+    private static final int VERSION_STRIPES = 4096;
+
+    private final Cache<String, CompanyExemptionsDocument> cache;
+    // Invalidations are counted per stripe of company numbers rather than per company, to bound
+    // the memory they take; an invalidation only holds back loads of companies in its stripe
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLong allInvalidations = new AtomicLong();
+    private final SingleFlight<String, CompanyExemptionsDocument> loads = new SingleFlight<>();
+
+    public ExemptionsCache(@Value("${exemptions.cache.maximum-size}") long maximumSize,
+            @Value("${exemptions.cache.expire-after-write}") Duration expireAfterWrite,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        FunctionCounter.builder(COALESCED_METRIC, loads, SingleFlight::coalescedCount)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    public Optional<CompanyExemptionsDocument> get(String companyNumber) {
+        return Optional.ofNullable(cache.getIfPresent(companyNumber));
+    }
+
+    /**
+     * Returns the cached document for the company or loads and caches it on a miss.
+     * A loaded document is only cached if the company was not invalidated while it was being
+     * loaded, so a slow read cannot overwrite the effect of a concurrent upsert or delete. For the
+     * same reason, a miss only shares a load in flight if it was started since the company was
+     * last invalidated.
+     *
+     * @param companyNumber the company number
+     * @param loader loads the document on a cache miss; may throw to signal that it does not exist
+     * @return the exemptions document
+     */
+    public CompanyExemptionsDocument getOrLoad(String companyNumber,
+            Function<String, CompanyExemptionsDocument> loader) {
+        CompanyExemptionsDocument cached = cache.getIfPresent(companyNumber);
+        if (cached != null) {
+            return cached;
+        }
+        return loads.execute(companyNumber, () -> {
+            final long version = version(companyNumber);
+            CompanyExemptionsDocument loaded = loader.apply(companyNumber);
+            if (version(companyNumber) == version) {
+                cache.put(companyNumber, loaded);
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * Returns the documents for the given companies, loading the ones missing from the cache with
+     * a single call to the loader. Companies with no document are absent from the result.
+     *
+     * @param companyNumbers the company numbers
+     * @param loader loads the documents for the company numbers it is given, keyed by company number
+     * @return the exemptions documents that exist, keyed by company number
+     */
+    public Map<String, CompanyExemptionsDocument> getAllOrLoad(Collection<String> companyNumbers,
+            Function<List<String>, Map<String, CompanyExemptionsDocument>> loader) {
+        Map<String, CompanyExemptionsDocument> documents = new HashMap<>(cache.getAllPresent(companyNumbers));
+        List<String> misses = companyNumbers.stream()
+                .filter(companyNumber -> !documents.containsKey(companyNumber))
+                .distinct()
+                .toList();
+        if (misses.isEmpty()) {
+            return documents;
+        }
+        Map<String, Long> versionsBefore = new HashMap<>();
+        misses.forEach(companyNumber -> versionsBefore.put(companyNumber, version(companyNumber)));
+        Map<String, CompanyExemptionsDocument> loaded = loader.apply(misses);
+        loaded.forEach((companyNumber, document) -> {
+            if (versionsBefore.containsKey(companyNumber)
+                    && version(companyNumber) == versionsBefore.get(companyNumber)) {
+                cache.put(companyNumber, document);
+            }
+        });
+        documents.putAll(loaded);
+        return documents;
+    }
+
+    public void invalidate(String companyNumber) {
+        versions.incrementAndGet(stripe(companyNumber));
+        loads.forget(companyNumber);
+        cache.invalidate(companyNumber);
+    }
+
+    public void invalidateAll() {
+        allInvalidations.incrementAndGet();
+        loads.forgetAll();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns a number that changes whenever the company, or the whole cache, is invalidated.
+     * Both counters only increase, so their sum changes whenever either does.
+     */
+    private long version(String companyNumber) {
+        return versions.get(stripe(companyNumber)) + allInvalidations.get();
+    }
+
+    private static int stripe(String companyNumber) {
+        int hash = companyNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & (VERSION_STRIPES - 1);
+    }
+}
@@ -0,0 +1,61 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+
+import java.io.OutputStream;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.model.ExemptionsExportItem;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Writes the company_exemptions collection as newline-delimited JSON, one company per line in
+ * company number order. Documents are read through a cursor and written as they arrive, so
+ * memory use does not grow with the size of the collection.
+ */
+@Component
+public class ExemptionsExporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+
+    private final ExemptionsRepository repository;
+    private final ObjectMapper objectMapper;
+    private final int cursorBatchSize;
+
+    public ExemptionsExporter(ExemptionsRepository repository, ObjectMapper objectMapper,
+            @Value("${exemptions.export.cursor-batch-size}") int cursorBatchSize) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.cursorBatchSize = cursorBatchSize;
+    }
+
+    /**
+     * Writes every company after the given company number. An interrupted export is resumed by
+     * passing the company number on the last complete line.
+     *
+     * @param after the company number to continue after, or null to start from the beginning
+     * @param outputStream the stream to write to; it is flushed but not closed
+     */
+    public void export(String after, OutputStream outputStream) {
+        long count = 0;
+        // The stream belongs to the caller, so closing the generator only flushes it
+        ObjectWriter writer = objectMapper.writer().without(StreamWriteFeature.AUTO_CLOSE_TARGET);
+        try (Stream<CompanyExemptionsDocument> documents = repository.streamAllAfter(after, cursorBatchSize);
+                JsonGenerator generator = writer.createGenerator(outputStream)) {
+            for (CompanyExemptionsDocument document : (Iterable<CompanyExemptionsDocument>) documents::iterator) {
+                writer.writeValue(generator, new ExemptionsExportItem(document.getId(), document.getData()));
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        LOGGER.info(String.format("Exported %d company exemptions", count), DataMapHolder.getLogMap());
+    }
+}
@@ -0,0 +1,38 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+
+import com.mongodb.MongoException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Creates the indexes of the exemptions collection on startup, whichever features are enabled,
+ * so that they are already built when a feature that relies on them is turned on. Indexes used
+ * only by an optional feature are created by that feature.
+ */
+@Component
+public class ExemptionsIndexes {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+
+    private final ExemptionsRepository repository;
+
+    public ExemptionsIndexes(ExemptionsRepository repository) {
+        this.repository = repository;
+    }
+
+    @PostConstruct
+    public void createIndexes() {
+        try {
+            repository.createDeltaAtMicrosIndex();
+        } catch (MongoException | DataAccessException ex) {
+            LOGGER.error("Failed to create the delta_at_micros index, queries on it will scan the collection", ex,
+                    DataMapHolder.getLogMap());
+        }
+    }
+}
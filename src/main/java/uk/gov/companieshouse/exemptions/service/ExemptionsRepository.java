@@ -1,9 +1,29 @@
 package uk.gov.companieshouse.exemptions.service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
 
 @Repository
-public interface ExemptionsRepository extends MongoRepository<CompanyExemptionsDocument, String> {
+public interface ExemptionsRepository extends MongoRepository<CompanyExemptionsDocument, String>,
+        CustomExemptionsRepository {
+
+    /**
+     * Reads only the etag and updated fields of a document, for answering conditional requests.
+     */
+    @Query(value = "{ '_id' : ?0 }", fields = "{ 'data.etag' : 1, 'updated' : 1 }")
+    Optional<CompanyExemptionsDocument> findVersionById(String companyNumber);
+
+    /**
+     * Reads a document without its rendered body, for the paths that do not serve it.
+     */
+    @Query(value = "{ '_id' : ?0 }", fields = "{ 'rendered' : 0, 'rendered_encoding' : 0 }")
+    Optional<CompanyExemptionsDocument> findWithoutRenderedById(String companyNumber);
+
+    @Query(value = "{ '_id' : { '$in' : ?0 } }", fields = "{ 'rendered' : 0, 'rendered_encoding' : 0 }")
+    List<CompanyExemptionsDocument> findAllWithoutRenderedById(Collection<String> companyNumbers);
 }
@@ -1,10 +1,22 @@
 package uk.gov.companieshouse.exemptions.service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.bson.RawBsonDocument;
 import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
 import uk.gov.companieshouse.api.exemptions.InternalExemptionsApi;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.model.ExemptionsBatchItem;
+import uk.gov.companieshouse.exemptions.model.ExemptionsBatchResult;
 
 public interface ExemptionsService {
     void upsertCompanyExemptions(String companyNumber, InternalExemptionsApi requestBody);
+    List<ExemptionsBatchResult> upsertCompanyExemptionsBatch(List<ExemptionsBatchItem> items);
     CompanyExemptions getCompanyExemptions(String companyNumber);
+    Map<String, CompanyExemptions> getCompanyExemptions(Collection<String> companyNumbers);
+    CompanyExemptionsDocument getCompanyExemptionsDocument(String companyNumber);
+    CompanyExemptionsDocument getCompanyExemptionsVersion(String companyNumber);
+    RawBsonDocument getCompanyExemptionsRaw(String companyNumber);
     void deleteCompanyExemptions(String companyNumber, String deltaAt);
 }
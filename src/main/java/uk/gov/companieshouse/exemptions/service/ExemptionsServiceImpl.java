@@ -1,15 +1,24 @@
 package uk.gov.companieshouse.exemptions.service;
 
 import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+import static uk.gov.companieshouse.exemptions.util.DateUtils.deltaAtMicros;
 import static uk.gov.companieshouse.exemptions.util.DateUtils.isDeltaStale;
 
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
+import org.bson.RawBsonDocument;
 import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
 import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
 import uk.gov.companieshouse.api.exemptions.InternalExemptionsApi;
 import uk.gov.companieshouse.exemptions.exception.BadRequestException;
@@ -17,9 +26,12 @@ import uk.gov.companieshouse.exemptions.exception.ConflictException;
 import uk.gov.companieshouse.exemptions.exception.NotFoundException;
 import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
 import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.exemptions.logging.RequestLog;
 import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
-import uk.gov.companieshouse.exemptions.model.Created;
+import uk.gov.companieshouse.exemptions.model.ExemptionsBatchItem;
+import uk.gov.companieshouse.exemptions.model.ExemptionsBatchResult;
 import uk.gov.companieshouse.exemptions.model.ResourceChangedRequest;
+import uk.gov.companieshouse.exemptions.model.UpsertOutcome;
 import uk.gov.companieshouse.exemptions.util.ExemptionsMapper;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
@@ -27,62 +39,231 @@ import uk.gov.companieshouse.logging.LoggerFactory;
 @Service
 public class ExemptionsServiceImpl implements ExemptionsService {
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSSSSS").withZone(ZoneId.of("Z"));
     private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
 
     private static final String ERROR_CALLING_CHS_KAFKA_API_MSG = "Error calling chs-kafka-api";
     private static final String ERROR_CONNECTING_TO_MONGO_DB_MSG = "Error connecting to MongoDB";
+    private static final String DATA = "data";
 
     private final ExemptionsRepository repository;
     private final ExemptionsMapper mapper;
     private final ExemptionsApiService exemptionsApiService;
+    private final ExemptionsCache cache;
+    private final ResourceChangedOutbox outbox;
+    private final ResourceChangedChangeStream changeStream;
+    private final ExemptionsBloomFilter bloomFilter;
 
-    public ExemptionsServiceImpl(ExemptionsRepository repository, ExemptionsMapper mapper, ExemptionsApiService exemptionsApiService) {
+    public ExemptionsServiceImpl(ExemptionsRepository repository, ExemptionsMapper mapper,
+            ExemptionsApiService exemptionsApiService, ExemptionsCache cache, ResourceChangedOutbox outbox,
+            ResourceChangedChangeStream changeStream, ExemptionsBloomFilter bloomFilter) {
         this.repository = repository;
         this.mapper = mapper;
         this.exemptionsApiService = exemptionsApiService;
+        this.cache = cache;
+        this.outbox = outbox;
+        this.changeStream = changeStream;
+        this.bloomFilter = bloomFilter;
     }
 
     @Override
     public void upsertCompanyExemptions(String companyNumber, InternalExemptionsApi requestBody) {
         try {
-            Optional<CompanyExemptionsDocument> existingDocument = repository.findById(companyNumber);
-
-            // If the document does not exist OR if the delta_at in the request is not before the delta_at on the document
-            if (existingDocument.isEmpty() ||
-                    StringUtils.isBlank(existingDocument.get().getDeltaAt()) ||
-                    !requestBody.getInternalData().getDeltaAt()
-                            .isBefore(ZonedDateTime.parse(existingDocument.get().getDeltaAt(), FORMATTER)
-                                    .toOffsetDateTime())) {
-                CompanyExemptionsDocument document = mapper.map(companyNumber, requestBody);
-
-                // If a document already exists and it has a created field, then reuse it
-                // otherwise, set it to the delta's updated_at field
-                existingDocument.map(CompanyExemptionsDocument::getCreated)
-                        .ifPresentOrElse(document::setCreated,
-                                () -> document.setCreated(new Created().setAt(document.getUpdated().at())));
-
-                repository.save(document);
-                LOGGER.info("Company exemption is updated in mongo", DataMapHolder.getLogMap());
-
-                exemptionsApiService.invokeChsKafkaApi(new ResourceChangedRequest(companyNumber, null, false));
+            CompanyExemptionsDocument document = mapper.map(companyNumber, requestBody);
+            ResourceChangedRequest resourceChanged = new ResourceChangedRequest(companyNumber, null, false);
+
+            bloomFilter.add(companyNumber);
+            if (changeStream.isEnabled()) {
+                // The notification is published from the change stream
+                upsertIfNotStale(document);
+                cache.invalidate(companyNumber);
+                RequestLog.info("Company exemption is updated in mongo");
+            } else if (outbox.isEnabled()) {
+                outbox.executeInTransaction(() -> {
+                    upsertIfNotStale(document);
+                    outbox.add(resourceChanged);
+                });
+                cache.invalidate(companyNumber);
+                RequestLog.info("Company exemption is updated in mongo");
             } else {
-                LOGGER.error("Record not persisted as it is not the latest record", DataMapHolder.getLogMap());
-                throw new ConflictException("Record not persisted as it is not the latest record");
+                upsertIfNotStale(document);
+                cache.invalidate(companyNumber);
+                RequestLog.info("Company exemption is updated in mongo");
+
+                exemptionsApiService.invokeChsKafkaApi(resourceChanged);
             }
         } catch (IllegalArgumentException ex) {
             LOGGER.info(ERROR_CALLING_CHS_KAFKA_API_MSG, DataMapHolder.getLogMap());
             throw new BadRequestException(ex.getMessage());
+        } catch (DataAccessException | TransactionException ex) {
+            LOGGER.info(ERROR_CONNECTING_TO_MONGO_DB_MSG, DataMapHolder.getLogMap());
+            throw new ServiceUnavailableException(ex.getMessage());
+        }
+    }
+
+    private void upsertIfNotStale(CompanyExemptionsDocument document) {
+        // Persist unless the delta_at on an existing document is after the delta_at in the request
+        if (!repository.upsertIfNotStale(document)) {
+            LOGGER.error("Record not persisted as it is not the latest record", DataMapHolder.getLogMap());
+            throw new ConflictException("Record not persisted as it is not the latest record");
+        }
+    }
+
+    /**
+     * Upserts many company exemptions deltas with one unordered bulk write, applying the same
+     * delta_at staleness rule as a single upsert to each item. With the outbox enabled, the
+     * notifications are added to it after the bulk write rather than in the same transaction.
+     * Otherwise they are published one at a time, in request order, after the bulk write.
+     *
+     * @param items the deltas, each with the company number it applies to
+     * @return the HTTP status for each item, in request order
+     */
+    @Override
+    public List<ExemptionsBatchResult> upsertCompanyExemptionsBatch(List<ExemptionsBatchItem> items) {
+        // Only the first valid item for a company number is applied; later duplicates are rejected
+        Map<String, CompanyExemptionsDocument> documents = new LinkedHashMap<>();
+        List<CompanyExemptionsDocument> applied = new ArrayList<>(items.size());
+        for (ExemptionsBatchItem item : items) {
+            CompanyExemptionsDocument document = null;
+            if (isValid(item) && !documents.containsKey(item.companyNumber())) {
+                try {
+                    document = mapper.map(item.companyNumber(), item.delta());
+                    documents.put(item.companyNumber(), document);
+                } catch (IllegalArgumentException ex) {
+                    LOGGER.info("Invalid company exemptions delta in batch", DataMapHolder.getLogMap());
+                }
+            }
+            applied.add(document);
+        }
+
+        documents.keySet().forEach(bloomFilter::add);
+
+        List<ExemptionsBatchResult> results = new ArrayList<>(items.size());
+        try {
+            Map<String, UpsertOutcome> outcomes = documents.isEmpty() ? Map.of()
+                    : repository.upsertAllIfNotStale(new ArrayList<>(documents.values()));
+            for (int i = 0; i < items.size(); i++) {
+                ExemptionsBatchItem item = items.get(i);
+                UpsertOutcome outcome = applied.get(i) != null ? outcomes.get(item.companyNumber()) : null;
+                int status = batchItemStatus(outcome);
+                if (outcome == UpsertOutcome.UPSERTED) {
+                    cache.invalidate(item.companyNumber());
+                    status = notifyUpserted(item.companyNumber());
+                }
+                results.add(new ExemptionsBatchResult(item == null ? null : item.companyNumber(), status));
+            }
         } catch (DataAccessException ex) {
             LOGGER.info(ERROR_CONNECTING_TO_MONGO_DB_MSG, DataMapHolder.getLogMap());
             throw new ServiceUnavailableException(ex.getMessage());
         }
+        RequestLog.info("Company exemptions batch is updated in mongo");
+        return results;
+    }
+
+    private static int batchItemStatus(UpsertOutcome outcome) {
+        if (outcome == null) {
+            return HttpStatus.BAD_REQUEST.value();
+        }
+        return switch (outcome) {
+            case STALE -> HttpStatus.CONFLICT.value();
+            case FAILED -> HttpStatus.SERVICE_UNAVAILABLE.value();
+            case UPSERTED -> HttpStatus.OK.value();
+        };
+    }
+
+    /**
+     * Publishes the changed event of an upserted item, or adds it to the outbox, and returns its
+     * status.
+     */
+    private int notifyUpserted(String companyNumber) {
+        ResourceChangedRequest resourceChanged = new ResourceChangedRequest(companyNumber, null, false);
+        try {
+            // With the change stream enabled, the notification is published from it
+            if (!changeStream.isEnabled()) {
+                if (outbox.isEnabled()) {
+                    outbox.add(resourceChanged);
+                } else {
+                    exemptionsApiService.invokeChsKafkaApi(resourceChanged);
+                }
+            }
+            return HttpStatus.OK.value();
+        } catch (ServiceUnavailableException | DataAccessException ex) {
+            return HttpStatus.SERVICE_UNAVAILABLE.value();
+        } catch (IllegalArgumentException ex) {
+            LOGGER.info(ERROR_CALLING_CHS_KAFKA_API_MSG, DataMapHolder.getLogMap());
+            return HttpStatus.BAD_REQUEST.value();
+        }
+    }
+
+    private static boolean isValid(ExemptionsBatchItem item) {
+        return item != null
+                && StringUtils.isNotBlank(item.companyNumber())
+                && item.delta() != null
+                && item.delta().getExternalData() != null
+                && item.delta().getInternalData() != null
+                && item.delta().getInternalData().getDeltaAt() != null;
     }
 
     @Override
     public CompanyExemptions getCompanyExemptions(String companyNumber) {
+        return getCompanyExemptionsDocument(companyNumber).getData();
+    }
+
+    /**
+     * Returns the exemptions of many companies, served from the cache where possible and
+     * otherwise read with a single query. Companies with no exemptions are absent from the result.
+     */
+    @Override
+    public Map<String, CompanyExemptions> getCompanyExemptions(Collection<String> companyNumbers) {
+        Map<String, CompanyExemptions> exemptions = new HashMap<>();
+        try {
+            cache.getAllOrLoad(companyNumbers, this::findAllCompanyExemptions)
+                    .forEach((companyNumber, document) -> exemptions.put(companyNumber, document.getData()));
+            return exemptions;
+        } catch (DataAccessException ex) {
+            LOGGER.info(ERROR_CONNECTING_TO_MONGO_DB_MSG, DataMapHolder.getLogMap());
+            throw new ServiceUnavailableException(ex.getMessage());
+        }
+    }
+
+    private Map<String, CompanyExemptionsDocument> findAllCompanyExemptions(List<String> companyNumbers) {
+        List<String> candidates = companyNumbers.stream()
+                .filter(bloomFilter::mightContain)
+                .toList();
+        return candidates.isEmpty() ? Map.of() : repository.findAllWithoutRenderedById(candidates).stream()
+                .collect(Collectors.toMap(CompanyExemptionsDocument::getId, Function.identity()));
+    }
+
+    @Override
+    public CompanyExemptionsDocument getCompanyExemptionsDocument(String companyNumber) {
+        return cache.getOrLoad(companyNumber, id -> findCompanyExemptions(id, repository::findById));
+    }
+
+    /**
+     * Returns a document carrying at least the etag and updated fields, read from the cache when
+     * present and otherwise from a projection that skips the exemptions data.
+     */
+    @Override
+    public CompanyExemptionsDocument getCompanyExemptionsVersion(String companyNumber) {
+        return cache.get(companyNumber)
+                .orElseGet(() -> findCompanyExemptions(companyNumber, repository::findVersionById));
+    }
+
+    /**
+     * Returns the data and updated fields of the document as undecoded BSON, read from the
+     * database on every call so that they can be written to the response without being mapped.
+     * A document without data is reported as not found, as there is nothing to write.
+     */
+    @Override
+    public RawBsonDocument getCompanyExemptionsRaw(String companyNumber) {
+        return findCompanyExemptions(companyNumber, id -> repository.findRawById(id)
+                .filter(document -> document.isDocument(DATA)));
+    }
+
+    private <T> T findCompanyExemptions(String companyNumber, Function<String, Optional<T>> finder) {
         try {
-            return repository.findById(companyNumber).map(CompanyExemptionsDocument::getData)
+            Optional<T> document = bloomFilter.mightContain(companyNumber)
+                    ? finder.apply(companyNumber) : Optional.empty();
+            return document
                     .orElseThrow(() -> new NotFoundException(String.format(
                             "Exemptions does not exist for company: %s ", companyNumber)));
         } catch (DataAccessException ex) {
@@ -96,31 +277,60 @@ public class ExemptionsServiceImpl implements ExemptionsService {
         if (StringUtils.isBlank(requestDeltaAt)) {
             throw new BadRequestException("deltaAt missing from delete request");
         }
+        final long requestDeltaAtMicros;
         try {
-            Optional<CompanyExemptionsDocument> document = repository.findById(companyNumber);
-
-            document.ifPresentOrElse(doc -> {
-                String existingDeltaAt = doc.getDeltaAt();
-                if (isDeltaStale(requestDeltaAt, existingDeltaAt)) {
-                    final String msg = String.format("Stale delta received; request delta_at: [%s] is not after existing delta_at: [%s]",
-                            requestDeltaAt, existingDeltaAt);
-                    LOGGER.error(msg, DataMapHolder.getLogMap());
-                    throw new ConflictException(msg);
-                }
-
-                repository.deleteById(companyNumber);
-                LOGGER.info("Company exemptions deleted in mongoDB successfully", DataMapHolder.getLogMap());
-                exemptionsApiService.invokeChsKafkaApiDelete(new ResourceChangedRequest(companyNumber, doc, true));
-            }, () -> {
-                LOGGER.info("Delete for non-existent exemptions document", DataMapHolder.getLogMap());
-                exemptionsApiService.invokeChsKafkaApiDelete(new ResourceChangedRequest(companyNumber, new CompanyExemptionsDocument(), true));
-            });
+            requestDeltaAtMicros = deltaAtMicros(requestDeltaAt);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage());
+        }
+        try {
+            if (changeStream.isEnabled()) {
+                // The notification is published from the change stream
+                deleteIfNotStale(companyNumber, requestDeltaAt, requestDeltaAtMicros);
+                cache.invalidate(companyNumber);
+            } else if (outbox.isEnabled()) {
+                outbox.executeInTransaction(() -> outbox.add(
+                        deleteIfNotStale(companyNumber, requestDeltaAt, requestDeltaAtMicros)));
+                cache.invalidate(companyNumber);
+            } else {
+                ResourceChangedRequest resourceChanged =
+                        deleteIfNotStale(companyNumber, requestDeltaAt, requestDeltaAtMicros);
+                cache.invalidate(companyNumber);
+                exemptionsApiService.invokeChsKafkaApiDelete(resourceChanged);
+            }
         } catch (IllegalArgumentException ex) {
             LOGGER.info(ERROR_CALLING_CHS_KAFKA_API_MSG, DataMapHolder.getLogMap());
             throw new BadRequestException(ex.getMessage());
-        } catch (DataAccessException ex) {
+        } catch (DataAccessException | TransactionException ex) {
             LOGGER.info(ERROR_CONNECTING_TO_MONGO_DB_MSG, DataMapHolder.getLogMap());
             throw new ServiceUnavailableException(ex.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Deletes the document unless its delta_at is after the request's.
+     *
+     * @return the resource changed request describing the deletion
+     */
+    private ResourceChangedRequest deleteIfNotStale(String companyNumber, String requestDeltaAt,
+            long requestDeltaAtMicros) {
+        Optional<CompanyExemptionsDocument> document = repository.findWithoutRenderedById(companyNumber);
+        if (document.isEmpty()) {
+            LOGGER.info("Delete for non-existent exemptions document", DataMapHolder.getLogMap());
+            return new ResourceChangedRequest(companyNumber, new CompanyExemptionsDocument(), true);
+        }
+
+        CompanyExemptionsDocument doc = document.get();
+        String existingDeltaAt = doc.getDeltaAt();
+        if (isDeltaStale(requestDeltaAtMicros, doc.getDeltaAtMicros(), existingDeltaAt)) {
+            final String msg = String.format("Stale delta received; request delta_at: [%s] is not after existing delta_at: [%s]",
+                    requestDeltaAt, existingDeltaAt);
+            LOGGER.error(msg, DataMapHolder.getLogMap());
+            throw new ConflictException(msg);
+        }
+
+        repository.deleteById(companyNumber);
+        RequestLog.info("Company exemptions deleted in mongoDB successfully");
+        return new ResourceChangedRequest(companyNumber, doc, true);
+    }
+}
@@ -0,0 +1,138 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import com.mongodb.MongoClientSettings;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+
+/**
+ * Change stream of the exemptions collection, from which resource-changed notifications are
+ * published when enabled. Writes then only touch Mongo, and
+ * {@link ResourceChangedChangeStreamPublisher} publishes a notification for each change. The
+ * resume token of the last change published is kept in Mongo, so that publishing carries on from
+ * where it left off after a restart.
+ *
+ * <p>Only one node tails the stream at a time. The stream document also holds a lease, with its
+ * owner and expiry, and the resume token is only saved by the node holding an unexpired lease.
+ */
+@Component
+public class ResourceChangedChangeStream {
+
+    static final String COLLECTION = "company_exemptions_change_stream";
+
+    private static final String ID = "_id";
+    private static final String STREAM_ID = "resource_changed";
+    private static final String RESUME_TOKEN = "resume_token";
+    private static final String UPDATED_AT = "updated_at";
+    private static final String LEASE_OWNER = "lease_owner";
+    private static final String LEASE_EXPIRES_AT = "lease_expires_at";
+    private static final JsonWriterSettings EXTENDED_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.EXTENDED)
+            .build();
+
+    private final MongoTemplate mongoTemplate;
+    private final Supplier<Instant> instantSupplier;
+    private final boolean enabled;
+
+    public ResourceChangedChangeStream(MongoTemplate mongoTemplate, Supplier<Instant> instantSupplier,
+            @Value("${exemptions.change-stream.enabled}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.instantSupplier = instantSupplier;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getCollectionName() {
+        return mongoTemplate.getCollectionName(CompanyExemptionsDocument.class);
+    }
+
+    /**
+     * Has the exemptions collection record the document before each change, so that a delete
+     * notification can carry the deleted data. Requires MongoDB 6.0 or later.
+     */
+    public void enablePreImages() {
+        mongoTemplate.executeCommand(new Document("collMod", getCollectionName())
+                .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+    }
+
+    public Optional<BsonDocument> findResumeToken() {
+        Document stream = mongoTemplate.findById(STREAM_ID, Document.class, COLLECTION);
+        return Optional.ofNullable(stream)
+                .map(document -> document.get(RESUME_TOKEN, Document.class))
+                .map(token -> token.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry()));
+    }
+
+    /**
+     * Takes the lease if it is free or has expired, or extends it if the owner already holds it.
+     *
+     * @return whether the owner holds the lease for the given duration from now
+     */
+    public boolean tryAcquireLease(String owner, Duration duration) {
+        Instant now = instantSupplier.get();
+        Query query = new Query(where(ID).is(STREAM_ID).orOperator(
+                where(LEASE_OWNER).is(owner),
+                where(LEASE_OWNER).exists(false),
+                where(LEASE_EXPIRES_AT).lt(now)));
+        try {
+            mongoTemplate.upsert(query, new Update()
+                            .set(LEASE_OWNER, owner)
+                            .set(LEASE_EXPIRES_AT, now.plus(duration)),
+                    COLLECTION);
+            return true;
+        } catch (DuplicateKeyException ex) {
+            // Another node holds the lease, so the upsert tried to insert a second stream document
+            return false;
+        }
+    }
+
+    /**
+     * Gives up the lease, so that another node can take it without waiting for it to expire.
+     */
+    public void releaseLease(String owner) {
+        mongoTemplate.updateFirst(leaseQuery(owner),
+                new Update().unset(LEASE_OWNER).unset(LEASE_EXPIRES_AT), COLLECTION);
+    }
+
+    /**
+     * Saves the resume token, provided the owner still holds the lease.
+     *
+     * @return false if the lease has been lost, and the token was not saved
+     */
+    public boolean saveResumeToken(String owner, BsonDocument resumeToken) {
+        return mongoTemplate.updateFirst(leaseQuery(owner), new Update()
+                        .set(RESUME_TOKEN, Document.parse(resumeToken.toJson(EXTENDED_JSON)))
+                        .set(UPDATED_AT, instantSupplier.get()),
+                COLLECTION).getMatchedCount() > 0;
+    }
+
+    /**
+     * Forgets the resume token, so that the stream starts again from the latest change, provided
+     * the owner still holds the lease.
+     */
+    public void clearResumeToken(String owner) {
+        mongoTemplate.updateFirst(leaseQuery(owner), new Update().unset(RESUME_TOKEN), COLLECTION);
+    }
+
+    private Query leaseQuery(String owner) {
+        return new Query(where(ID).is(STREAM_ID)
+                .and(LEASE_OWNER).is(owner)
+                .and(LEASE_EXPIRES_AT).gt(instantSupplier.get()));
+    }
+}
@@ -0,0 +1,301 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.model.ResourceChangedRequest;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Tails the change stream of the exemptions collection and publishes a resource-changed
+ * notification for each change, in the order the changes were made. A notification that fails
+ * is retried with exponential backoff, and the resume token is saved only once it has been
+ * published, so delivery is at least once. A notification that still fails after the maximum
+ * number of attempts is logged with its resume token and skipped, so that one bad change cannot
+ * hold back every later one.
+ *
+ * <p>Updates are published only when they set the updated field, as every exemptions write does,
+ * so that maintenance such as the delta_at_micros backfill is not published. An upsert that leaves
+ * the document unchanged produces no change event, so nothing is published for it, whereas the
+ * inline path always published. Delete notifications carry the document as it was before the
+ * delete, where Mongo still holds it.
+ *
+ * <p>Every node runs a publisher, but only the one holding the lease in
+ * {@link ResourceChangedChangeStream} tails the stream; the others wait to take the lease over.
+ * The holder renews it as it goes, checks it before each publish and stops tailing once it is lost.
+ */
+@Component
+@ConditionalOnProperty(name = "exemptions.change-stream.enabled", havingValue = "true")
+public class ResourceChangedChangeStreamPublisher implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+    private static final String METRIC_PREFIX = "exemptions.change.stream";
+    private static final String ID = "_id";
+    private static final String OPERATION_TYPE = "operationType";
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(10);
+    private static final String UPDATED = "updated";
+    // A pipeline update, such as the upsert, reports the fields it changed within updated by their
+    // dotted paths, so updated.at rather than updated
+    private static final Bson SETS_UPDATED = Filters.expr(new Document("$anyElementTrue", List.of(
+            new Document("$map", new Document("input", new Document("$objectToArray",
+                    new Document("$ifNull", List.of("$updateDescription.updatedFields", new Document()))))
+                    .append("in", new Document("$or", List.of(
+                            new Document("$eq", List.of("$$this.k", UPDATED)),
+                            new Document("$eq", List.of(
+                                    new Document("$indexOfBytes", List.of("$$this.k", UPDATED + ".")), 0)))))))));
+    private static final List<Bson> PIPELINE = List.of(Aggregates.match(Filters.or(
+            Filters.in(OPERATION_TYPE, OperationType.INSERT.getValue(), OperationType.REPLACE.getValue(),
+                    OperationType.DELETE.getValue()),
+            Filters.and(Filters.eq(OPERATION_TYPE, OperationType.UPDATE.getValue()), SETS_UPDATED))));
+
+    private final MongoTemplate mongoTemplate;
+    private final ResourceChangedChangeStream changeStream;
+    private final ExemptionsApiService exemptionsApiService;
+    private final Duration initialBackoff;
+    private final Duration maximumBackoff;
+    private final Duration maximumAwaitTime;
+    private final Duration leaseDuration;
+    private final int maximumAttempts;
+    private final String owner = UUID.randomUUID().toString();
+    private final Counter published;
+    private final Counter failed;
+    private final Counter skipped;
+    private volatile boolean running;
+    private volatile long leaseValidUntil;
+    private long leaseRenewedAt;
+    private Thread tailer;
+
+    public ResourceChangedChangeStreamPublisher(MongoTemplate mongoTemplate, ResourceChangedChangeStream changeStream,
+            ExemptionsApiService exemptionsApiService, MeterRegistry meterRegistry,
+            @Value("${exemptions.change-stream.initial-backoff}") Duration initialBackoff,
+            @Value("${exemptions.change-stream.maximum-backoff}") Duration maximumBackoff,
+            @Value("${exemptions.change-stream.maximum-await-time}") Duration maximumAwaitTime,
+            @Value("${exemptions.change-stream.lease-duration}") Duration leaseDuration,
+            @Value("${exemptions.change-stream.maximum-attempts}") int maximumAttempts) {
+        this.mongoTemplate = mongoTemplate;
+        this.changeStream = changeStream;
+        this.exemptionsApiService = exemptionsApiService;
+        this.initialBackoff = initialBackoff;
+        this.maximumBackoff = maximumBackoff;
+        this.maximumAwaitTime = maximumAwaitTime;
+        this.leaseDuration = leaseDuration;
+        this.maximumAttempts = maximumAttempts;
+        this.published = Counter.builder(METRIC_PREFIX + ".published").register(meterRegistry);
+        this.failed = Counter.builder(METRIC_PREFIX + ".failed").register(meterRegistry);
+        this.skipped = Counter.builder(METRIC_PREFIX + ".skipped").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".lease.held", this, publisher -> publisher.isLeaseHeld() ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void start() {
+        try {
+            changeStream.enablePreImages();
+        } catch (MongoException | DataAccessException ex) {
+            LOGGER.error("Failed to enable pre-images, deletes will be published without their data", ex,
+                    DataMapHolder.getLogMap());
+        }
+        running = true;
+        tailer = Thread.ofPlatform().name("exemptions-change-stream").daemon().start(this::tail);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        tailer.interrupt();
+        try {
+            tailer.join(STOP_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            changeStream.releaseLease(owner);
+        } catch (MongoException | DataAccessException ex) {
+            LOGGER.error("Failed to release the change stream lease", ex, DataMapHolder.getLogMap());
+        }
+        leaseValidUntil = 0;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void tail() {
+        int failures = 0;
+        while (running) {
+            try {
+                if (!acquireLease()) {
+                    sleep(leaseDuration.dividedBy(3));
+                    continue;
+                }
+                tailOnce();
+                failures = 0;
+            } catch (MongoException | DataAccessException ex) {
+                if (!running) {
+                    return;
+                }
+                if (ex instanceof MongoException mongoException
+                        && mongoException.getCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    // The oplog no longer holds the last change published, so carry on from now
+                    LOGGER.error("Change stream resume token is no longer in the oplog, changes have been missed",
+                            ex, DataMapHolder.getLogMap());
+                    changeStream.clearResumeToken(owner);
+                } else {
+                    LOGGER.error("Failed to read the exemptions change stream", ex, DataMapHolder.getLogMap());
+                }
+                sleep(backoff(failures++));
+            }
+        }
+    }
+
+    private void tailOnce() {
+        ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(changeStream.getCollectionName())
+                .watch(PIPELINE)
+                .fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE)
+                .maxAwaitTime(maximumAwaitTime.toMillis(), TimeUnit.MILLISECONDS);
+        BsonDocument savedToken = changeStream.findResumeToken().orElse(null);
+        if (savedToken != null) {
+            stream = stream.resumeAfter(savedToken);
+        }
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            while (running && holdsLease()) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null && !publishUntilDone(change)) {
+                    break;
+                }
+                // Saved when idle too, so that the token does not age out of the oplog
+                BsonDocument resumeToken = cursor.getResumeToken();
+                if (resumeToken != null && !resumeToken.equals(savedToken)) {
+                    if (!holdsLease() || !changeStream.saveResumeToken(owner, resumeToken)) {
+                        break;
+                    }
+                    savedToken = resumeToken;
+                }
+            }
+            if (running) {
+                leaseValidUntil = 0;
+                LOGGER.info("Lost the change stream lease, another node is publishing", DataMapHolder.getLogMap());
+            }
+        }
+    }
+
+    /**
+     * Publishes the change, retrying until it succeeds or has failed the maximum number of times.
+     *
+     * @return false if the publisher stopped or lost the lease first
+     */
+    private boolean publishUntilDone(ChangeStreamDocument<Document> change) {
+        for (int attempts = 0; running && holdsLease(); attempts++) {
+            if (publish(change)) {
+                return true;
+            }
+            if (attempts + 1 >= maximumAttempts) {
+                // The resume token is logged so that the change can be found and published again
+                LOGGER.error(String.format("Resource changed notification for %s failed %d times, skipping it: %s",
+                        change.getDocumentKey().getString(ID).getValue(), attempts + 1,
+                        change.getResumeToken().toJson()), DataMapHolder.getLogMap());
+                skipped.increment();
+                return true;
+            }
+            sleep(backoff(attempts));
+        }
+        return false;
+    }
+
+    private boolean publish(ChangeStreamDocument<Document> change) {
+        String companyNumber = change.getDocumentKey().getString(ID).getValue();
+        DataMapHolder.initialise(UUID.randomUUID().toString());
+        DataMapHolder.get().companyNumber(companyNumber);
+        try {
+            if (change.getOperationType() == OperationType.DELETE) {
+                Document before = change.getFullDocumentBeforeChange();
+                CompanyExemptionsDocument deleted = before != null
+                        ? mongoTemplate.getConverter().read(CompanyExemptionsDocument.class, before)
+                        : new CompanyExemptionsDocument();
+                exemptionsApiService.invokeChsKafkaApiDelete(new ResourceChangedRequest(companyNumber, deleted, true));
+            } else {
+                exemptionsApiService.invokeChsKafkaApi(new ResourceChangedRequest(companyNumber, null, false));
+            }
+            published.increment();
+            return true;
+        } catch (RuntimeException ex) {
+            failed.increment();
+            LOGGER.info(String.format("Resource changed notification failed, retrying: %s", ex.getMessage()),
+                    DataMapHolder.getLogMap());
+            return false;
+        } finally {
+            DataMapHolder.clear();
+        }
+    }
+
+    /**
+     * Takes or renews the lease. Its expiry is counted from before the request, so that this node
+     * never believes it holds the lease for longer than Mongo does.
+     */
+    private boolean acquireLease() {
+        long requestedAt = System.nanoTime();
+        if (changeStream.tryAcquireLease(owner, leaseDuration)) {
+            leaseRenewedAt = requestedAt;
+            leaseValidUntil = requestedAt + leaseDuration.toNanos();
+            return true;
+        }
+        leaseValidUntil = 0;
+        return false;
+    }
+
+    /**
+     * Whether this node still holds the lease, renewing it once a third of it has passed.
+     */
+    private boolean holdsLease() {
+        long now = System.nanoTime();
+        if (now - leaseRenewedAt >= leaseDuration.toNanos() / 3) {
+            return acquireLease();
+        }
+        return isLeaseHeld();
+    }
+
+    private boolean isLeaseHeld() {
+        return System.nanoTime() - leaseValidUntil < 0;
+    }
+
+    Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts, 20));
+        return backoff.compareTo(maximumBackoff) > 0 ? maximumBackoff : backoff;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Indexes;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+import org.bson.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.exemptions.model.ResourceChangedOutboxEntry;
+import uk.gov.companieshouse.exemptions.model.ResourceChangedRequest;
+
+/**
+ * Outbox of resource-changed notifications. When enabled, exemptions writes record their
+ * notification here in the same Mongo transaction as the document change, and
+ * {@link ResourceChangedOutboxPublisher} publishes it to chs-kafka-api afterwards.
+ */
+@Component
+public class ResourceChangedOutbox {
+
+    private static final String ID = "_id";
+    private static final String NEXT_ATTEMPT_AT = "next_attempt_at";
+    private static final String CREATED_AT = "created_at";
+    private static final String COMPANY_NUMBER = "company_number";
+    private static final String PARKED_AT = "parked_at";
+    private static final String ATTEMPTS = "attempts";
+
+    private final MongoTemplate mongoTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Supplier<Instant> instantSupplier;
+    private final boolean enabled;
+
+    public ResourceChangedOutbox(MongoTemplate mongoTemplate, MongoDatabaseFactory dbFactory,
+            ObjectProvider<MongoTransactionManager> transactionManager, Supplier<Instant> instantSupplier,
+            @Value("${exemptions.outbox.enabled}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.transactionTemplate = new TransactionTemplate(
+                transactionManager.getIfAvailable(() -> new MongoTransactionManager(dbFactory)));
+        this.instantSupplier = instantSupplier;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs the given writes, including any {@link #add} calls, in a single Mongo transaction.
+     */
+    public void executeInTransaction(Runnable writes) {
+        transactionTemplate.executeWithoutResult(status -> writes.run());
+    }
+
+    public void add(ResourceChangedRequest request) {
+        Instant now = instantSupplier.get();
+        mongoTemplate.insert(new ResourceChangedOutboxEntry()
+                .setCompanyNumber(request.companyNumber())
+                .setDelete(Boolean.TRUE.equals(request.isDelete()))
+                .setDeletedData(request.document() != null ? request.document().getData() : null)
+                .setRequestId(DataMapHolder.getRequestId())
+                .setCreatedAt(now)
+                .setNextAttemptAt(now));
+    }
+
+    /**
+     * Creates the indexes behind {@link #findDue} and {@link #findWaiting}, if they do not exist.
+     */
+    public void createIndexes() {
+        MongoCollection<Document> collection =
+                mongoTemplate.getCollection(mongoTemplate.getCollectionName(ResourceChangedOutboxEntry.class));
+        collection.createIndex(Indexes.ascending(NEXT_ATTEMPT_AT, CREATED_AT));
+        collection.createIndex(Indexes.ascending(COMPANY_NUMBER, CREATED_AT));
+    }
+
+    /**
+     * Returns the oldest entries that are due to be attempted. Parked entries have no next attempt,
+     * so are never returned.
+     */
+    public List<ResourceChangedOutboxEntry> findDue(Instant now, int limit) {
+        return mongoTemplate.find(Query.query(where(NEXT_ATTEMPT_AT).lte(now))
+                        .with(Sort.by(CREATED_AT, ID))
+                        .limit(limit),
+                ResourceChangedOutboxEntry.class);
+    }
+
+    /**
+     * Returns the entries of the given companies that are leased or waiting to be retried, so that
+     * the publisher can hold back each company's later entries until they are done.
+     */
+    public List<ResourceChangedOutboxEntry> findWaiting(Collection<String> companyNumbers, Instant now) {
+        Query query = Query.query(where(COMPANY_NUMBER).in(companyNumbers).and(NEXT_ATTEMPT_AT).gt(now));
+        query.fields().include(ID, COMPANY_NUMBER, CREATED_AT);
+        return mongoTemplate.find(query, ResourceChangedOutboxEntry.class);
+    }
+
+    /**
+     * Leases the entry to this instance until the given time, unless another instance has
+     * claimed or rescheduled it since it was read.
+     *
+     * @return true if this instance now holds the entry
+     */
+    public boolean claim(ResourceChangedOutboxEntry entry, Instant leaseUntil) {
+        return mongoTemplate.updateFirst(
+                        Query.query(where(ID).is(entry.getId()).and(NEXT_ATTEMPT_AT).is(entry.getNextAttemptAt())),
+                        new Update().set(NEXT_ATTEMPT_AT, leaseUntil),
+                        ResourceChangedOutboxEntry.class)
+                .getModifiedCount() == 1;
+    }
+
+    public void reschedule(ResourceChangedOutboxEntry entry, Instant nextAttemptAt) {
+        mongoTemplate.updateFirst(Query.query(where(ID).is(entry.getId())),
+                new Update().set(NEXT_ATTEMPT_AT, nextAttemptAt).inc(ATTEMPTS, 1),
+                ResourceChangedOutboxEntry.class);
+    }
+
+    /**
+     * Stops retrying the entry, keeping it in the outbox for investigation. A parked entry no
+     * longer holds back the company's later entries.
+     */
+    public void park(ResourceChangedOutboxEntry entry, Instant parkedAt) {
+        mongoTemplate.updateFirst(Query.query(where(ID).is(entry.getId())),
+                new Update().unset(NEXT_ATTEMPT_AT).set(PARKED_AT, parkedAt).inc(ATTEMPTS, 1),
+                ResourceChangedOutboxEntry.class);
+    }
+
+    public void remove(ResourceChangedOutboxEntry entry) {
+        mongoTemplate.remove(Query.query(where(ID).is(entry.getId())), ResourceChangedOutboxEntry.class);
+    }
+}
@@ -0,0 +1,149 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static uk.gov.companieshouse.exemptions.ExemptionsApplication.APPLICATION_NAME_SPACE;
+
+import com.mongodb.MongoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.exemptions.logging.DataMapHolder;
+import uk.gov.companieshouse.exemptions.model.ResourceChangedOutboxEntry;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Publishes outbox entries to chs-kafka-api, oldest first. A company's entries are published in
+ * the order they were written: while one is leased or waiting to be retried, the later ones are
+ * held back. Failed entries are retried with exponential backoff, and an entry whose publisher
+ * dies is picked up again once its lease expires, so delivery is at least once. An entry that
+ * still fails after the maximum number of attempts is parked, and is no longer retried.
+ */
+@Component
+@ConditionalOnProperty(name = "exemptions.outbox.enabled", havingValue = "true")
+public class ResourceChangedOutboxPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(APPLICATION_NAME_SPACE);
+    private static final String METRIC_PREFIX = "exemptions.outbox";
+    private static final Comparator<ResourceChangedOutboxEntry> OUTBOX_ORDER = Comparator
+            .comparing(ResourceChangedOutboxEntry::getCreatedAt)
+            .thenComparing(ResourceChangedOutboxEntry::getId);
+
+    private final ResourceChangedOutbox outbox;
+    private final ExemptionsApiService exemptionsApiService;
+    private final Supplier<Instant> instantSupplier;
+    private final int batchSize;
+    private final Duration lease;
+    private final Duration initialBackoff;
+    private final Duration maximumBackoff;
+    private final int maximumAttempts;
+    private final Counter parked;
+
+    public ResourceChangedOutboxPublisher(ResourceChangedOutbox outbox, ExemptionsApiService exemptionsApiService,
+            Supplier<Instant> instantSupplier, MeterRegistry meterRegistry,
+            @Value("${exemptions.outbox.batch-size}") int batchSize,
+            @Value("${exemptions.outbox.lease}") Duration lease,
+            @Value("${exemptions.outbox.initial-backoff}") Duration initialBackoff,
+            @Value("${exemptions.outbox.maximum-backoff}") Duration maximumBackoff,
+            @Value("${exemptions.outbox.maximum-attempts}") int maximumAttempts) {
+        this.outbox = outbox;
+        this.exemptionsApiService = exemptionsApiService;
+        this.instantSupplier = instantSupplier;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.initialBackoff = initialBackoff;
+        this.maximumBackoff = maximumBackoff;
+        this.maximumAttempts = maximumAttempts;
+        this.parked = Counter.builder(METRIC_PREFIX + ".parked").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void createIndexes() {
+        try {
+            outbox.createIndexes();
+        } catch (MongoException | DataAccessException ex) {
+            LOGGER.error("Failed to create the outbox indexes, polls will scan the outbox", ex,
+                    DataMapHolder.getLogMap());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${exemptions.outbox.poll-interval}")
+    public void publishPending() {
+        Instant now = instantSupplier.get();
+        List<ResourceChangedOutboxEntry> due = outbox.findDue(now, batchSize);
+        if (due.isEmpty()) {
+            return;
+        }
+        Map<String, ResourceChangedOutboxEntry> firstWaiting = new HashMap<>();
+        Set<String> companyNumbers = due.stream().map(ResourceChangedOutboxEntry::getCompanyNumber)
+                .collect(Collectors.toSet());
+        outbox.findWaiting(companyNumbers, now).forEach(waiting -> firstWaiting.merge(
+                waiting.getCompanyNumber(), waiting, BinaryOperator.minBy(OUTBOX_ORDER)));
+
+        Set<String> heldBack = new HashSet<>();
+        for (ResourceChangedOutboxEntry entry : due) {
+            ResourceChangedOutboxEntry waiting = firstWaiting.get(entry.getCompanyNumber());
+            if (heldBack.contains(entry.getCompanyNumber())
+                    || (waiting != null && OUTBOX_ORDER.compare(waiting, entry) < 0)) {
+                continue;
+            }
+            if (!publish(entry)) {
+                heldBack.add(entry.getCompanyNumber());
+            }
+        }
+    }
+
+    private boolean publish(ResourceChangedOutboxEntry entry) {
+        Instant now = instantSupplier.get();
+        if (!outbox.claim(entry, now.plus(lease))) {
+            return false;
+        }
+
+        DataMapHolder.initialise(entry.getRequestId());
+        DataMapHolder.get().companyNumber(entry.getCompanyNumber());
+        try {
+            if (entry.isDelete()) {
+                exemptionsApiService.invokeChsKafkaApiDelete(entry.toResourceChangedRequest());
+            } else {
+                exemptionsApiService.invokeChsKafkaApi(entry.toResourceChangedRequest());
+            }
+            outbox.remove(entry);
+            return true;
+        } catch (RuntimeException ex) {
+            if (entry.getAttempts() + 1 >= maximumAttempts) {
+                LOGGER.error(String.format("Resource changed notification failed %d times, parking it: %s",
+                        entry.getAttempts() + 1, ex.getMessage()), DataMapHolder.getLogMap());
+                outbox.park(entry, now);
+                parked.increment();
+                return true;
+            }
+            Duration backoff = backoff(entry.getAttempts());
+            LOGGER.info(String.format("Resource changed notification failed, retrying in %s: %s",
+                    backoff, ex.getMessage()), DataMapHolder.getLogMap());
+            outbox.reschedule(entry, now.plus(backoff));
+            return false;
+        } finally {
+            DataMapHolder.clear();
+        }
+    }
+
+    Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts, 20));
+        return backoff.compareTo(maximumBackoff) > 0 ? maximumBackoff : backoff;
+    }
+}
@@ -0,0 +1,16 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import uk.gov.companieshouse.api.chskafka.ChangedResource;
+
+/**
+ * Publishes resource-changed events.
+ */
+public interface ResourceChangedPublisher {
+
+    /**
+     * Publishes the event, returning once it has been accepted.
+     *
+     * @throws uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException if it was not
+     */
+    void publish(ChangedResource changedResource);
+}
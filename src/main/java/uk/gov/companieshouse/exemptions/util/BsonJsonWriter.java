@@ -0,0 +1,84 @@
+package uk.gov.companieshouse.exemptions.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import tools.jackson.core.JsonGenerator;
+
+/**
+ * Writes a stored exemptions sub-document straight from its BSON encoding to a JSON generator,
+ * without binding it to {@code CompanyExemptions} first. The output is the same as serialising
+ * the bound object with the application's mapper: fields keep their stored order, null fields are
+ * left out, and dates are written as ISO local dates. This holds for documents written by this
+ * service, which stores the fields of the API model and nothing else.
+ */
+public final class BsonJsonWriter {
+
+    private BsonJsonWriter() {
+    }
+
+    /**
+     * Writes the document as a JSON object.
+     *
+     * @param document the document to write, ideally a {@code RawBsonDocument} so that its bytes
+     *     are read in place
+     * @param generator the generator to write to; it is neither flushed nor closed
+     */
+    public static void write(BsonDocument document, JsonGenerator generator) {
+        try (BsonReader reader = document.asBsonReader()) {
+            writeDocument(reader, generator);
+        }
+    }
+
+    private static void writeDocument(BsonReader reader, JsonGenerator generator) {
+        reader.readStartDocument();
+        generator.writeStartObject();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+            } else {
+                generator.writeName(name);
+                writeValue(reader, generator);
+            }
+        }
+        reader.readEndDocument();
+        generator.writeEndObject();
+    }
+
+    private static void writeArray(BsonReader reader, JsonGenerator generator) {
+        reader.readStartArray();
+        generator.writeStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            writeValue(reader, generator);
+        }
+        reader.readEndArray();
+        generator.writeEndArray();
+    }
+
+    private static void writeValue(BsonReader reader, JsonGenerator generator) {
+        switch (reader.getCurrentBsonType()) {
+            case DOCUMENT -> writeDocument(reader, generator);
+            case ARRAY -> writeArray(reader, generator);
+            case STRING -> generator.writeString(reader.readString());
+            case BOOLEAN -> generator.writeBoolean(reader.readBoolean());
+            case INT32 -> generator.writeNumber(reader.readInt32());
+            case INT64 -> generator.writeNumber(reader.readInt64());
+            case DOUBLE -> generator.writeNumber(reader.readDouble());
+            case DECIMAL128 -> generator.writeNumber(reader.readDecimal128().bigDecimalValue());
+            case NULL -> {
+                reader.readNull();
+                generator.writeNull();
+            }
+            // Dates written before the exemptions were stored as plain strings are BSON dates, and
+            // are read back in UTC, as ExemptionsReadConverter binds them for the mapped path
+            case DATE_TIME -> generator.writeString(LocalDate.ofInstant(
+                    Instant.ofEpochMilli(reader.readDateTime()), ZoneOffset.UTC).toString());
+            default -> throw new IllegalStateException(String.format(
+                    "Unexpected BSON type %s in exemptions document", reader.getCurrentBsonType()));
+        }
+    }
+}
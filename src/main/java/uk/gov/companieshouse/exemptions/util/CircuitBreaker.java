@@ -0,0 +1,176 @@
+package uk.gov.companieshouse.exemptions.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Stops calls to a failing dependency for a while, so that callers fail fast instead of waiting
+ * on it. The outcomes of the most recent calls are kept in a fixed size window; once enough
+ * calls have been made and the share that failed reaches the threshold, the circuit opens and
+ * calls are refused. After the open duration a few probe calls are let through: if they all
+ * succeed the circuit closes, and if any fails, or they do not all finish within the half-open
+ * timeout, it opens again.
+ *
+ * <p>Each permit carries the generation of the state it was granted in, which changes on every
+ * transition. An outcome is only counted against that state, so a slow call admitted while
+ * closed cannot close a half-open circuit, and a late probe cannot affect the next round.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Returned by {@link #tryAcquire} when the call may not be made.
+     */
+    public static final long REFUSED = -1;
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+    private final Duration halfOpenTimeout;
+    private final Supplier<Instant> instantSupplier;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long generation;
+    private Instant openUntil;
+    private Instant halfOpenUntil;
+    private int probesPermitted;
+    private int probesSucceeded;
+
+    /**
+     * @param windowSize the number of most recent calls whose outcomes are kept
+     * @param minimumCalls the number of calls to be recorded before the circuit can open
+     * @param failureRateThreshold the share of failed calls, from 0 to 1, at which the circuit opens
+     * @param openDuration how long the circuit stays open before probing
+     * @param halfOpenCalls the number of probe calls that must succeed to close the circuit
+     * @param halfOpenTimeout how long the probes have to succeed before the circuit opens again
+     * @param instantSupplier the clock
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration,
+            int halfOpenCalls, Duration halfOpenTimeout, Supplier<Instant> instantSupplier) {
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+        this.halfOpenTimeout = halfOpenTimeout;
+        this.instantSupplier = instantSupplier;
+    }
+
+    /**
+     * Asks to make a call. A permitted call must be followed by exactly one of
+     * {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}, given the permit returned here.
+     *
+     * @return the permit for the call, or {@link #REFUSED} if it may not be made
+     */
+    public synchronized long tryAcquire() {
+        Instant now = instantSupplier.get();
+        expireHalfOpen(now);
+        if (state == State.OPEN) {
+            if (now.isBefore(openUntil)) {
+                return REFUSED;
+            }
+            transition(State.HALF_OPEN);
+            probesPermitted = 0;
+            probesSucceeded = 0;
+            halfOpenUntil = now.plus(halfOpenTimeout);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesPermitted == halfOpenCalls) {
+                return REFUSED;
+            }
+            probesPermitted++;
+        }
+        return generation;
+    }
+
+    public synchronized void onSuccess(long permit) {
+        expireHalfOpen(instantSupplier.get());
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded == halfOpenCalls) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure(long permit) {
+        expireHalfOpen(instantSupplier.get());
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Hands back a permitted call that was not made, such as one refused by a bulkhead, without
+     * recording an outcome.
+     */
+    public synchronized void onIgnored(long permit) {
+        if (permit == generation && state == State.HALF_OPEN && probesPermitted > probesSucceeded) {
+            probesPermitted--;
+        }
+    }
+
+    public synchronized State getState() {
+        expireHalfOpen(instantSupplier.get());
+        return state;
+    }
+
+    private void expireHalfOpen(Instant now) {
+        if (state == State.HALF_OPEN && !now.isBefore(halfOpenUntil)) {
+            open();
+        }
+    }
+
+    private void record(boolean failed) {
+        if (recorded == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        transition(State.OPEN);
+        openUntil = instantSupplier.get().plus(openDuration);
+    }
+
+    private void close() {
+        transition(State.CLOSED);
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+
+    private void transition(State to) {
+        state = to;
+        generation++;
+    }
+}
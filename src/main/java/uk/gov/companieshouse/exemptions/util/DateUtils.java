@@ -3,14 +3,16 @@ package uk.gov.companieshouse.exemptions.util;
 import static java.time.ZoneOffset.UTC;
 
 import java.time.Instant;
-import java.time.OffsetDateTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
 import org.apache.commons.lang3.StringUtils;
 
 public class DateUtils {
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSSSSS")
-            .withZone(UTC);
+    private static final int DELTA_AT_LENGTH = 20;
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final long MICROS_PER_SECOND = 1_000_000L;
 
     private DateUtils() {}
 
@@ -19,8 +21,65 @@ public class DateUtils {
                 .format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
     }
 
-    public static boolean isDeltaStale(final String requestDeltaAt, final String existingDeltaAt) {
-        return StringUtils.isNotBlank(existingDeltaAt) && OffsetDateTime.parse(requestDeltaAt, FORMATTER)
-                .isBefore(OffsetDateTime.parse(existingDeltaAt, FORMATTER));
+    /**
+     * Returns whether the request is stale against the existing document, comparing the numeric
+     * delta_at of the document if it has one and its delta_at string otherwise.
+     */
+    public static boolean isDeltaStale(final long requestDeltaAtMicros, final Long existingDeltaAtMicros,
+            final String existingDeltaAt) {
+        if (existingDeltaAtMicros != null) {
+            return requestDeltaAtMicros < existingDeltaAtMicros;
+        }
+        return StringUtils.isNotBlank(existingDeltaAt) && requestDeltaAtMicros < deltaAtMicros(existingDeltaAt);
+    }
+
+    /**
+     * Converts a yyyyMMddHHmmssSSSSSS delta_at in UTC to microseconds since the epoch. The digits
+     * are read directly rather than through a formatter, as this is on the write path.
+     *
+     * @param deltaAt the delta_at
+     * @return the microseconds since the epoch
+     * @throws IllegalArgumentException if the delta_at is not a valid date and time in that format
+     */
+    public static long deltaAtMicros(final String deltaAt) {
+        if (deltaAt == null || deltaAt.length() != DELTA_AT_LENGTH) {
+            throw new IllegalArgumentException(String.format("Invalid delta_at: [%s]", deltaAt));
+        }
+        int year = digits(deltaAt, 0, 4);
+        int month = digits(deltaAt, 4, 6);
+        int day = digits(deltaAt, 6, 8);
+        int hour = digits(deltaAt, 8, 10);
+        int minute = digits(deltaAt, 10, 12);
+        int second = digits(deltaAt, 12, 14);
+        int micros = digits(deltaAt, 14, 20);
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                || hour > 23 || minute > 59 || second > 59) {
+            throw new IllegalArgumentException(String.format("Invalid delta_at: [%s]", deltaAt));
+        }
+        long epochSecond = epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+        return epochSecond * MICROS_PER_SECOND + micros;
+    }
+
+    private static int digits(final String value, final int from, final int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException(String.format("Invalid delta_at: [%s]", value));
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    // Days from 1970-01-01 in the proleptic Gregorian calendar, counting years from March so that
+    // the leap day falls at the end of the year
+    private static long epochDay(final int year, final int month, final int day) {
+        int marchYear = month <= 2 ? year - 1 : year;
+        int era = marchYear / 400;
+        int yearOfEra = marchYear - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
     }
 }
@@ -16,9 +16,15 @@ import uk.gov.companieshouse.exemptions.model.Updated;
 public class ExemptionsMapper {
 
     private final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSSSSS");
+    private final ExemptionsRenderer renderer;
+
+    public ExemptionsMapper(ExemptionsRenderer renderer) {
+        this.renderer = renderer;
+    }
 
     public CompanyExemptionsDocument map(String companyNumber, InternalExemptionsApi requestBody) {
-        return new CompanyExemptionsDocument()
+        final String deltaAt = dateTimeFormatter.format(requestBody.getInternalData().getDeltaAt());
+        return renderer.render(new CompanyExemptionsDocument()
                 .setId(companyNumber)
                 .setData(new CompanyExemptions()
                         .exemptions(requestBody.getExternalData().getExemptions())
@@ -26,6 +32,7 @@ public class ExemptionsMapper {
                         .links(new LinksType().self(String.format("/company/%s/exemptions", companyNumber)))
                         .etag(GenerateEtagUtil.generateEtag()))
                 .setUpdated(new Updated(LocalDateTime.now()))
-                .setDeltaAt(dateTimeFormatter.format(requestBody.getInternalData().getDeltaAt()));
+                .setDeltaAt(deltaAt)
+                .setDeltaAtMicros(DateUtils.deltaAtMicros(deltaAt)));
     }
 }
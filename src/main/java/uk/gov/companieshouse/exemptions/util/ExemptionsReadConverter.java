@@ -1,5 +1,6 @@
 package uk.gov.companieshouse.exemptions.util;
 
+import java.util.Objects;
 import org.bson.Document;
 import org.jspecify.annotations.NullMarked;
 import org.springframework.core.convert.converter.Converter;
@@ -19,14 +20,15 @@ public class ExemptionsReadConverter implements Converter<Document, CompanyExemp
     }
 
     /**
-     * Write convertor.
+     * Read convertor. Binds the document tree directly rather than rendering it to JSON text and
+     * parsing it back.
      * @param source source Document.
-     * @return charge BSON object.
+     * @return company exemptions.
      */
     @Override
     public CompanyExemptions convert(final Document source) {
         try {
-            return mapper.readValue(source.toJson(), CompanyExemptions.class);
+            return mapper.convertValue(Objects.requireNonNull(source), CompanyExemptions.class);
         } catch (Exception ex) {
             throw new ExemptionReadException(ex);
         }
@@ -0,0 +1,83 @@
+package uk.gov.companieshouse.exemptions.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+import uk.gov.companieshouse.exemptions.exception.ExemptionWriteException;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+
+/**
+ * Renders the GET response body of an exemptions document when it is written, so that reads can
+ * return the stored bytes instead of serialising the exemptions each time. The body is rendered
+ * with the application's mapper, so it is the same as the response would otherwise be, and is
+ * optionally stored gzip compressed.
+ */
+@Component
+public class ExemptionsRenderer {
+
+    public static final String GZIP = "gzip";
+    public static final String IDENTITY = "identity";
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final boolean gzipEnabled;
+
+    public ExemptionsRenderer(ObjectMapper objectMapper,
+            @Value("${exemptions.rendered.enabled}") boolean enabled,
+            @Value("${exemptions.rendered.gzip-enabled}") boolean gzipEnabled) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.gzipEnabled = gzipEnabled;
+    }
+
+    /**
+     * Sets the rendered body of the document from its data, unless rendering is disabled.
+     *
+     * @param document the document to render
+     * @return the document
+     */
+    public CompanyExemptionsDocument render(CompanyExemptionsDocument document) {
+        if (!enabled || document.getData() == null) {
+            return document;
+        }
+        byte[] json = objectMapper.writeValueAsBytes(document.getData());
+        return gzipEnabled
+                ? document.setRendered(gzip(json)).setRenderedEncoding(GZIP)
+                : document.setRendered(json).setRenderedEncoding(IDENTITY);
+    }
+
+    /**
+     * Writes the rendered body of the document, decompressing it if it is stored gzip compressed
+     * and the client does not accept that.
+     *
+     * @param document a document with a rendered body
+     * @param gzipAccepted whether the body may be written gzip compressed
+     * @param outputStream the stream to write to; it is not closed
+     */
+    public static void write(CompanyExemptionsDocument document, boolean gzipAccepted,
+            OutputStream outputStream) throws IOException {
+        if (GZIP.equals(document.getRenderedEncoding()) && !gzipAccepted) {
+            try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(document.getRendered()))) {
+                inputStream.transferTo(outputStream);
+            }
+        } else {
+            outputStream.write(document.getRendered());
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 32);
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+            outputStream.write(json);
+        } catch (IOException ex) {
+            throw new ExemptionWriteException(ex);
+        }
+        return compressed.toByteArray();
+    }
+}
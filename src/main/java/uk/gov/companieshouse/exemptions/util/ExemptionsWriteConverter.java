@@ -1,6 +1,7 @@
 package uk.gov.companieshouse.exemptions.util;
 
 import com.mongodb.BasicDBObject;
+import java.util.Objects;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.convert.WritingConverter;
 import org.jspecify.annotations.NullMarked;
@@ -19,14 +20,15 @@ public class ExemptionsWriteConverter implements Converter<CompanyExemptions, Ba
     }
 
     /**
-     * Write convertor.
-     * @param source source Document.
-     * @return charge BSON object.
+     * Write convertor. Binds the exemptions directly to a BSON object rather than serialising
+     * them to JSON text and parsing it back.
+     * @param source source company exemptions.
+     * @return exemptions BSON object.
      */
     @Override
     public BasicDBObject convert(final CompanyExemptions source) {
         try {
-            return BasicDBObject.parse(mapper.writeValueAsString(source));
+            return mapper.convertValue(Objects.requireNonNull(source), BasicDBObject.class);
         } catch (Exception ex) {
             throw new ExemptionWriteException(ex);
         }
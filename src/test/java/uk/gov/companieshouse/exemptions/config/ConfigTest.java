@@ -3,6 +3,7 @@ package uk.gov.companieshouse.exemptions.config;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.TaskDecorator;
 import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
 import uk.gov.companieshouse.api.InternalApiClient;
 
@@ -23,10 +24,14 @@ class ConfigTest {
     @Autowired
     private MongoCustomConversions mongoCustomConversions;
 
+    @Autowired
+    private TaskDecorator loggingContextTaskDecorator;
+
     @Test
     void whenContextLoads_thenBeansCorrectlyGenerated() {
         assertThat(instantSupplier).isNotNull();
         assertThat(apiClientSupplier).isNotNull();
         assertThat(mongoCustomConversions).isNotNull();
+        assertThat(loggingContextTaskDecorator).isNotNull();
     }
 }
\ No newline at end of file
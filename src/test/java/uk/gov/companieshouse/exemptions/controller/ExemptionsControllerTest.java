@@ -1,25 +1,41 @@
 package uk.gov.companieshouse.exemptions.controller;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.options;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -28,6 +44,7 @@ import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -46,18 +63,28 @@ import uk.gov.companieshouse.exemptions.exception.BadRequestException;
 import uk.gov.companieshouse.exemptions.exception.ConflictException;
 import uk.gov.companieshouse.exemptions.exception.NotFoundException;
 import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.model.ExemptionsBatchItem;
+import uk.gov.companieshouse.exemptions.model.ExemptionsBatchResult;
+import uk.gov.companieshouse.exemptions.model.Updated;
+import uk.gov.companieshouse.exemptions.service.ExemptionsExporter;
 import uk.gov.companieshouse.exemptions.service.ExemptionsService;
+import uk.gov.companieshouse.exemptions.util.ExemptionsRenderer;
 import uk.gov.companieshouse.logging.Logger;
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(controllers = ExemptionsController.class)
 @ContextConfiguration(classes = {ExemptionsController.class, ControllerExceptionHandler.class})
 @Import({WebSecurityConfig.class})
+@TestPropertySource(properties = {"exemptions.batch.maximum-size=2", "exemptions.bulk-get.maximum-size=2"})
 class ExemptionsControllerTest {
     private static final String URI = "/company-exemptions/12345678/internal";
     private static final String GET_URI = "/company/12345678/exemptions";
+    private static final String BATCH_URI = "/company-exemptions/internal/batch";
+    private static final String BULK_GET_URI = "/company-exemptions";
     private static final String DELTA_AT = "20240219123045999999";
     private static final String COMPANY_NUMBER = "12345678";
+    private static final String ETAG = "5776376e7f99890d957f063aba9e13fdfef35cf1";
 
     @Autowired
     private MockMvc mockMvc;
@@ -71,6 +98,9 @@ class ExemptionsControllerTest {
     @MockitoBean
     private ExemptionsService exemptionsService;
 
+    @MockitoBean
+    private ExemptionsExporter exemptionsExporter;
+
     private final Gson gson = new GsonBuilder().setPrettyPrinting()
             .excludeFieldsWithoutExposeAnnotation()
             .create();
@@ -167,12 +197,148 @@ class ExemptionsControllerTest {
          result.andExpect(status().isConflict());
     }
 
+    @Test
+    @DisplayName("Successful batch upsert request returns a status per item")
+    void upsertCompanyExemptionsBatch() throws Exception {
+        // given
+        List<ExemptionsBatchResult> expected = List.of(
+                new ExemptionsBatchResult(COMPANY_NUMBER, 200),
+                new ExemptionsBatchResult("87654321", 409));
+        when(exemptionsService.upsertCompanyExemptionsBatch(any())).thenReturn(expected);
+
+        // when
+        final var result = mockMvc.perform(post(BATCH_URI)
+                .contentType(APPLICATION_JSON)
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key")
+                .header("ERIC-Authorised-Key-Privileges", "internal-app")
+                .content(mapper.writeValueAsString(List.of(getBatchItem(COMPANY_NUMBER), getBatchItem("87654321")))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        assertEquals(expected, List.of(mapper.readValue(result.getResponse().getContentAsString(),
+                ExemptionsBatchResult[].class)));
+    }
+
+    @Test
+    @DisplayName("Batch upsert request larger than the maximum size")
+    void upsertCompanyExemptionsBatchTooLarge() throws Exception {
+        // when
+        final var result = mockMvc.perform(post(BATCH_URI)
+                .contentType(APPLICATION_JSON)
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key")
+                .header("ERIC-Authorised-Key-Privileges", "internal-app")
+                .content(mapper.writeValueAsString(List.of(getBatchItem("1"), getBatchItem("2"), getBatchItem("3")))));
+
+        // then
+        result.andExpect(status().isBadRequest());
+        verify(exemptionsService, never()).upsertCompanyExemptionsBatch(any());
+    }
+
+    @Test
+    @DisplayName("Unauthorised batch upsert request")
+    void upsertCompanyExemptionsBatchUnauthorised() throws Exception {
+        // when
+        final var result = mockMvc.perform(post(BATCH_URI)
+                .contentType(APPLICATION_JSON)
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key")
+                .content(mapper.writeValueAsString(List.of(getBatchItem(COMPANY_NUMBER)))));
+
+        // then
+        result.andExpect(status().isForbidden());
+        verify(exemptionsService, never()).upsertCompanyExemptionsBatch(any());
+    }
+
+    @Test
+    @DisplayName("Successful bulk get request marks companies without exemptions as not found")
+    void getCompanyExemptionsBulk() throws Exception {
+        // given
+        final var data = getExemptionsData();
+        when(exemptionsService.getCompanyExemptions(anyCollection())).thenReturn(Map.of(COMPANY_NUMBER, data));
+
+        // when
+        final var result = mockMvc.perform(get(BULK_GET_URI)
+                .param("company_number", COMPANY_NUMBER, "87654321")
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        final var actual = mapper.readTree(result.getResponse().getContentAsString());
+        assertEquals(200, actual.get(COMPANY_NUMBER).get("status").asInt());
+        assertEquals(data, mapper.treeToValue(actual.get(COMPANY_NUMBER).get("exemptions"), CompanyExemptions.class));
+        assertEquals(404, actual.get("87654321").get("status").asInt());
+        assertFalse(actual.get("87654321").has("exemptions"));
+    }
+
+    @Test
+    @DisplayName("Bulk get request for more companies than the maximum size")
+    void getCompanyExemptionsBulkTooLarge() throws Exception {
+        // when
+        final var result = mockMvc.perform(get(BULK_GET_URI)
+                .param("company_number", "1,2,3")
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key"));
+
+        // then
+        result.andExpect(status().isBadRequest());
+        verify(exemptionsService, never()).getCompanyExemptions(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Bulk get request without company numbers")
+    void getCompanyExemptionsBulkMissingCompanyNumbers() throws Exception {
+        // when
+        final var result = mockMvc.perform(get(BULK_GET_URI)
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key"));
+
+        // then
+        result.andExpect(status().isBadRequest());
+        verify(exemptionsService, never()).getCompanyExemptions(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Export streams newline-delimited JSON from the continuation point")
+    void exportCompanyExemptions() throws Exception {
+        // given
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write("{\"company_number\":\"12345679\"}\n".getBytes());
+            return null;
+        }).when(exemptionsExporter).export(eq(COMPANY_NUMBER), any());
+
+        // when
+        final var started = mockMvc.perform(get("/company-exemptions/internal/export")
+                .param("after", COMPANY_NUMBER)
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // then
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-ndjson"))
+                .andExpect(content().string("{\"company_number\":\"12345679\"}\n"));
+    }
+
     @Test
     @DisplayName("Successful get company exemptions request")
     void getCompanyExemptions() throws Exception {
         // given
         final var data = getExemptionsData();
-        doReturn(data).when(exemptionsService).getCompanyExemptions(COMPANY_NUMBER);
+        doReturn(getExemptionsDocument(data)).when(exemptionsService).getCompanyExemptionsDocument(COMPANY_NUMBER);
 
         // when
         final var result = mockMvc.perform(get(GET_URI)
@@ -187,12 +353,62 @@ class ExemptionsControllerTest {
         assertEquals(data, mapper.readValue(result.getResponse().getContentAsString(), CompanyExemptions.class));
     }
 
+    @Test
+    @DisplayName("Get company exemptions request returns the stored gzip rendering when gzip is accepted")
+    void getCompanyExemptionsRenderedGzip() throws Exception {
+        // given
+        final var data = getExemptionsData();
+        final var document = new ExemptionsRenderer(mapper, true, true).render(getExemptionsDocument(data));
+        doReturn(document).when(exemptionsService).getCompanyExemptionsDocument(COMPANY_NUMBER);
+
+        // when
+        final var result = mockMvc.perform(get(GET_URI)
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key")
+                .header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + ETAG + "\""))
+                .andReturn();
+
+        // then
+        final var body = result.getResponse().getContentAsByteArray();
+        assertArrayEquals(document.getRendered(), body);
+        try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals(data, mapper.readValue(inputStream, CompanyExemptions.class));
+        }
+    }
+
+    @Test
+    @DisplayName("Get company exemptions request decompresses the stored gzip rendering when gzip is not accepted")
+    void getCompanyExemptionsRenderedIdentity() throws Exception {
+        // given
+        final var data = getExemptionsData();
+        final var document = new ExemptionsRenderer(mapper, true, true).render(getExemptionsDocument(data));
+        doReturn(document).when(exemptionsService).getCompanyExemptionsDocument(COMPANY_NUMBER);
+
+        // when
+        final var result = mockMvc.perform(get(GET_URI)
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn();
+
+        // then
+        assertEquals(data, mapper.readValue(result.getResponse().getContentAsString(), CompanyExemptions.class));
+    }
+
     @Test
     @DisplayName("Successful get company exemptions request with oauth2")
     void getCompanyExemptionsOauth2() throws Exception {
         // given
         final var data = getExemptionsData();
-        doReturn(data).when(exemptionsService).getCompanyExemptions(COMPANY_NUMBER);
+        doReturn(getExemptionsDocument(data)).when(exemptionsService).getCompanyExemptionsDocument(COMPANY_NUMBER);
 
         // when
         final var result = mockMvc.perform(get(GET_URI)
@@ -207,11 +423,74 @@ class ExemptionsControllerTest {
         assertEquals(data, mapper.readValue(result.getResponse().getContentAsString(), CompanyExemptions.class));
     }
 
+    @Test
+    @DisplayName("Get company exemptions request returns etag and last modified headers")
+    void getCompanyExemptionsCachingHeaders() throws Exception {
+        // given
+        final var data = getExemptionsData();
+        doReturn(getExemptionsDocument(data)).when(exemptionsService).getCompanyExemptionsDocument(COMPANY_NUMBER);
+
+        // when
+        final var result = mockMvc.perform(get(GET_URI)
+                .contentType(APPLICATION_JSON)
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + ETAG + "\""))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    @DisplayName("Conditional get company exemptions request returns not modified when etag matches")
+    void getCompanyExemptionsNotModified() throws Exception {
+        // given
+        doReturn(getExemptionsDocument(getExemptionsData())).when(exemptionsService)
+                .getCompanyExemptionsVersion(COMPANY_NUMBER);
+
+        // when
+        final var result = mockMvc.perform(get(GET_URI)
+                .contentType(APPLICATION_JSON)
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + ETAG + "\""));
+
+        // then
+        result.andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(exemptionsService, never()).getCompanyExemptionsDocument(any());
+    }
+
+    @Test
+    @DisplayName("Conditional get company exemptions request returns body when etag does not match")
+    void getCompanyExemptionsModified() throws Exception {
+        // given
+        final var data = getExemptionsData();
+        doReturn(getExemptionsDocument(data)).when(exemptionsService).getCompanyExemptionsVersion(COMPANY_NUMBER);
+        doReturn(getExemptionsDocument(data)).when(exemptionsService).getCompanyExemptionsDocument(COMPANY_NUMBER);
+
+        // when
+        final var result = mockMvc.perform(get(GET_URI)
+                .contentType(APPLICATION_JSON)
+                .header("x-request-id", "5342342")
+                .header("ERIC-Identity", "Test-Identity")
+                .header("ERIC-Identity-Type", "Key")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"stale-etag\""))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        assertEquals(data, mapper.readValue(result.getResponse().getContentAsString(), CompanyExemptions.class));
+    }
+
     @Test
     @DisplayName("Document not found for get company exemptions request")
     void getCompanyExemptionsNotFound() throws Exception {
         // given
-        when(exemptionsService.getCompanyExemptions(any())).thenThrow(NotFoundException.class);
+        when(exemptionsService.getCompanyExemptionsDocument(any())).thenThrow(NotFoundException.class);
 
         // when
         final var result = mockMvc.perform(get(GET_URI)
@@ -229,7 +508,7 @@ class ExemptionsControllerTest {
     @DisplayName("MongoDB is unavailable for get company exemptions request")
     void getCompanyExemptionsMongoUnavailable() throws Exception {
         // given
-        when(exemptionsService.getCompanyExemptions(any())).thenThrow(ServiceUnavailableException.class);
+        when(exemptionsService.getCompanyExemptionsDocument(any())).thenThrow(ServiceUnavailableException.class);
 
         // when
         final var result = mockMvc.perform(get(GET_URI)
@@ -380,7 +659,7 @@ class ExemptionsControllerTest {
     void getCompanyExemptionsCORS() throws Exception {
         // given
         final var data = getExemptionsData();
-        doReturn(data).when(exemptionsService).getCompanyExemptions(COMPANY_NUMBER);
+        doReturn(getExemptionsDocument(data)).when(exemptionsService).getCompanyExemptionsDocument(COMPANY_NUMBER);
 
         // when
         final var result = mockMvc.perform(get(GET_URI)
@@ -441,9 +720,21 @@ class ExemptionsControllerTest {
         return request;
     }
 
+    private ExemptionsBatchItem getBatchItem(String companyNumber) {
+        return new ExemptionsBatchItem(companyNumber, getRequestBody());
+    }
+
+    private CompanyExemptionsDocument getExemptionsDocument(CompanyExemptions data) {
+        return new CompanyExemptionsDocument()
+                .setId(COMPANY_NUMBER)
+                .setData(data)
+                .setUpdated(new Updated(LocalDateTime.of(2024, 2, 19, 12, 30, 45)));
+    }
+
     private CompanyExemptions getExemptionsData() {
         final var exemptionsData = new CompanyExemptions();
         exemptionsData.setKind(KindEnum.EXEMPTIONS);
+        exemptionsData.setEtag(ETAG);
         final var exemptions = new Exemptions();
         final var exemptionItem = new ExemptionItem(LocalDate.of(2022, 1, 1));
         final var regulatedMarketItem =
@@ -0,0 +1,77 @@
+package uk.gov.companieshouse.exemptions.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AsyncLogAppenderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AsyncLogAppender appender = new AsyncLogAppender(meterRegistry, 1024, "block");
+
+    @AfterEach
+    void tearDown() {
+        if (appender.isRunning()) {
+            appender.stop();
+        }
+        DataMapHolder.clear();
+    }
+
+    @Test
+    @DisplayName("Request lines are handed to the appender while it runs, and written before it stops")
+    void writesQueuedLinesOnStop() {
+        // given
+        appender.start();
+        DataMapHolder.initialise("request-id");
+
+        // when
+        boolean async = RequestLog.isAsync();
+        for (int i = 0; i < 100; i++) {
+            RequestLog.info("Processing GET company exemptions");
+        }
+        appender.stop();
+
+        // then
+        assertTrue(async);
+        assertFalse(RequestLog.isAsync());
+        assertEquals(0.0, meterRegistry.get("exemptions.logging.async.queued").gauge().value());
+        assertEquals(0.0, meterRegistry.counter("exemptions.logging.async.dropped").count());
+    }
+
+    @Test
+    @DisplayName("An idle writer is woken by the next line appended")
+    void wakesIdleWriter() throws InterruptedException {
+        // given
+        appender.start();
+        Thread.sleep(50);
+
+        // when
+        boolean appended = appender.append("Processing GET company exemptions", Map.of());
+
+        // then
+        assertTrue(appended);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("exemptions.logging.async.queued").gauge().value() > 0
+                && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0.0, meterRegistry.get("exemptions.logging.async.queued").gauge().value());
+    }
+
+    @Test
+    @DisplayName("A line appended once the appender has stopped is left to the caller to log")
+    void appendAfterStop() {
+        // when
+        boolean appended = appender.append("Processing GET company exemptions", Map.of());
+
+        // then
+        assertFalse(appended);
+    }
+}
@@ -0,0 +1,88 @@
+package uk.gov.companieshouse.exemptions.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DataMapHolderTest {
+
+    @AfterEach
+    void tearDown() {
+        DataMapHolder.clear();
+    }
+
+    @Test
+    @DisplayName("A propagated task logs with the context of the thread that created it")
+    void propagate() throws Exception {
+        // given
+        DataMapHolder.initialise("request-id");
+        DataMapHolder.get().companyNumber("12345678");
+        AtomicReference<Map<String, Object>> logMap = new AtomicReference<>();
+        Runnable task = DataMapHolder.propagate(() -> logMap.set(DataMapHolder.getLogMap()));
+
+        // when
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture.runAsync(task, executor).get();
+        }
+
+        // then
+        assertEquals("request-id", logMap.get().get("request_id"));
+        assertEquals("12345678", logMap.get().get("company_number"));
+    }
+
+    @Test
+    @DisplayName("A propagated task clears the context of the thread that ran it")
+    void propagateClears() throws Exception {
+        // given
+        DataMapHolder.initialise("request-id");
+        AtomicReference<String> requestIdAfter = new AtomicReference<>();
+
+        // when
+        try (var executor = Executors.newSingleThreadExecutor()) {
+            executor.submit(DataMapHolder.propagate(() -> { })).get();
+            executor.submit(() -> requestIdAfter.set(DataMapHolder.getRequestId())).get();
+        }
+
+        // then
+        assertEquals("uninitialised", requestIdAfter.get());
+    }
+
+    @Test
+    @DisplayName("The log map reflects a field changed after it was built")
+    void logMapRebuiltOnChange() {
+        // given
+        DataMapHolder.initialise("request-id");
+        DataMapHolder.getLogMap();
+
+        // when
+        DataMapHolder.get().companyNumber("12345678");
+        Map<String, Object> actual = DataMapHolder.getLogMap();
+
+        // then
+        assertEquals("request-id", actual.get("request_id"));
+        assertEquals("12345678", actual.get("company_number"));
+        assertEquals("request-id", DataMapHolder.getRequestId());
+    }
+
+    @Test
+    @DisplayName("Changes made to a log map by a logger are not seen by later callers")
+    void logMapCopied() {
+        // given
+        DataMapHolder.initialise("request-id");
+        DataMapHolder.getLogMap().put("message", "logged");
+
+        // when
+        Map<String, Object> actual = DataMapHolder.getLogMap();
+
+        // then
+        assertFalse(actual.containsKey("message"));
+        assertEquals("request-id", actual.get("request_id"));
+    }
+}
@@ -17,6 +17,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -38,6 +39,7 @@ class AuthenticationFilterTest {
     private static final String INVALID_PRIVILEGE = "privilege";
     private static final String INVALID_ERIC_IDENTITY_TYPE = "notKeyOrOauth2";
     private static final String INVALID_KEY = "key";
+    private static final String EXPORT_URI = "/company-exemptions/internal/export";
 
     @Mock
     private Logger logger;
@@ -114,6 +116,48 @@ class AuthenticationFilterTest {
         verify(filterChain, times(1)).doFilter(request, response);
     }
 
+    @Test
+    @DisplayName("KEY type GET request for an internal endpoint with internal app privileges passes filter")
+    void doFilterInternalInternalGetWithInternalApp() throws ServletException, IOException {
+        when(request.getHeader(ERIC_IDENTITY_HEADER_KEY)).thenReturn(ERIC_IDENTITY_HEADER);
+        when(request.getHeader(ERIC_IDENTITY_TYPE_HEADER_KEY)).thenReturn(KEY);
+        when(request.getHeader(ERIC_AUTHORISED_KEY_PRIVILEGES_HEADER_KEY)).thenReturn(INTERNAL_APP_PRIVILEGES);
+        when(request.getMethod()).thenReturn(GET_METHOD);
+        when(request.getRequestURI()).thenReturn(EXPORT_URI);
+
+        filter.doFilterInternal(request, response, filterChain);
+
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @ParameterizedTest(name = "ERIC-Identity-Type {0}, GET for an internal endpoint without internal app privileges is forbidden")
+    @ValueSource(strings = {OAUTH_2, KEY})
+    void doFilterInternalInternalGetWithoutInternalApp(final String ericIdentityType) throws ServletException, IOException {
+        when(request.getHeader(ERIC_IDENTITY_HEADER_KEY)).thenReturn(ERIC_IDENTITY_HEADER);
+        when(request.getHeader(ERIC_IDENTITY_TYPE_HEADER_KEY)).thenReturn(ericIdentityType);
+        when(request.getMethod()).thenReturn(GET_METHOD);
+        when(request.getRequestURI()).thenReturn(EXPORT_URI);
+
+        filter.doFilterInternal(request, response, filterChain);
+
+        verify(filterChain, times(0)).doFilter(request, response);
+        verify(response).sendError(HttpServletResponse.SC_FORBIDDEN);
+    }
+
+    @ParameterizedTest(name = "GET {0} without internal app privileges is forbidden")
+    @ValueSource(strings = {"/metrics", "/metrics/cache.gets"})
+    void doFilterInternalMetricsWithoutInternalApp(final String uri) throws ServletException, IOException {
+        when(request.getHeader(ERIC_IDENTITY_HEADER_KEY)).thenReturn(ERIC_IDENTITY_HEADER);
+        when(request.getHeader(ERIC_IDENTITY_TYPE_HEADER_KEY)).thenReturn(KEY);
+        when(request.getMethod()).thenReturn(GET_METHOD);
+        when(request.getRequestURI()).thenReturn(uri);
+
+        filter.doFilterInternal(request, response, filterChain);
+
+        verify(filterChain, times(0)).doFilter(request, response);
+        verify(response).sendError(HttpServletResponse.SC_FORBIDDEN);
+    }
+
     @Test
     @DisplayName("Request with no identity fails")
     void doFilterInternalNoIdentity() throws ServletException, IOException {
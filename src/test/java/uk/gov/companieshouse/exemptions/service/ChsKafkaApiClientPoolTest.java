@@ -0,0 +1,101 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.function.Executable;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.api.InternalApiClient;
+import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
+
+@ExtendWith(MockitoExtension.class)
+class ChsKafkaApiClientPoolTest {
+
+    @Mock
+    private Supplier<InternalApiClient> clientFactory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ChsKafkaApiClientPool pool;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        pool = new ChsKafkaApiClientPool(clientFactory, 2, Duration.ofMillis(10), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Released clients are reused instead of building new ones")
+    void reusesReleasedClients() {
+        // given
+        when(clientFactory.get()).thenReturn(mock(InternalApiClient.class));
+
+        // when
+        InternalApiClient first = pool.borrow();
+        pool.release(first);
+        InternalApiClient second = pool.borrow();
+
+        // then
+        assertSame(first, second);
+        verify(clientFactory, times(1)).get();
+    }
+
+    @Test
+    @DisplayName("Concurrent borrowers are given different clients")
+    void lendsEachClientToOneBorrower() {
+        // given
+        when(clientFactory.get()).thenReturn(mock(InternalApiClient.class), mock(InternalApiClient.class));
+
+        // when
+        InternalApiClient first = pool.borrow();
+        InternalApiClient second = pool.borrow();
+
+        // then
+        assertNotSame(first, second);
+        assertEquals(2.0, meterRegistry.get("chs.kafka.api.client.pool.active").gauge().value());
+        assertEquals(0.0, meterRegistry.get("chs.kafka.api.client.pool.idle").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Borrowing from an exhausted pool times out with service unavailable")
+    void borrowTimesOut() {
+        // given
+        when(clientFactory.get()).thenReturn(mock(InternalApiClient.class), mock(InternalApiClient.class));
+        pool.borrow();
+        pool.borrow();
+
+        // when
+        Executable actual = () -> pool.borrow();
+
+        // then
+        assertThrows(ServiceUnavailableException.class, actual);
+        assertEquals(1.0, meterRegistry.get("chs.kafka.api.client.pool.borrow.timeouts").counter().count());
+    }
+
+    @Test
+    @DisplayName("A failure to build a client does not use up the pool")
+    void factoryFailureReleasesPermit() {
+        // given
+        when(clientFactory.get()).thenThrow(new IllegalStateException("bad config"))
+                .thenReturn(mock(InternalApiClient.class));
+
+        // when
+        assertThrows(IllegalStateException.class, () -> pool.borrow());
+
+        // then
+        assertEquals(0.0, meterRegistry.get("chs.kafka.api.client.pool.active").gauge().value());
+    }
+}
@@ -0,0 +1,204 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.api.InternalApiClient;
+import uk.gov.companieshouse.api.chskafka.ChangedResource;
+import uk.gov.companieshouse.api.error.ApiErrorResponseException;
+import uk.gov.companieshouse.api.handler.chskafka.PrivateChangedResourceHandler;
+import uk.gov.companieshouse.api.handler.chskafka.request.PrivateChangedResourcePost;
+import uk.gov.companieshouse.api.http.HttpClient;
+import uk.gov.companieshouse.api.model.ApiResponse;
+import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
+import uk.gov.companieshouse.exemptions.util.CircuitBreaker;
+import uk.gov.companieshouse.logging.Logger;
+
+@ExtendWith(MockitoExtension.class)
+class ChsKafkaApiResourceChangedPublisherTest {
+
+    private static final long PERMIT = 3;
+
+    @InjectMocks
+    private ChsKafkaApiResourceChangedPublisher publisher;
+
+    @Mock
+    private ChsKafkaApiClientPool clientPool;
+    @Mock
+    private ChsKafkaApiCircuitBreaker circuitBreaker;
+    @Spy
+    private ChsKafkaApiRetrier retrier = new ChsKafkaApiRetrier(1, Duration.ZERO, Duration.ZERO, List.of(503),
+            Duration.ofSeconds(1), false, 0.95, Duration.ZERO, new SimpleMeterRegistry());
+    @Mock
+    private Logger logger;
+
+    @Mock
+    private InternalApiClient internalApiClient;
+    @Mock
+    private PrivateChangedResourceHandler privateChangedResourceHandler;
+    @Mock
+    private PrivateChangedResourcePost changedResourcePost;
+    @Mock
+    private ApiResponse<Void> response;
+    @Mock
+    private ChangedResource changedResource;
+    @Mock
+    private HttpClient httpClient;
+
+    @Test
+    @DisplayName("Test should successfully invoke chs-kafka-api")
+    void invokeChsKafkaApi() throws ApiErrorResponseException {
+        // given
+        when(circuitBreaker.tryAcquire()).thenReturn(PERMIT);
+        when(clientPool.borrow()).thenReturn(internalApiClient);
+        when(internalApiClient.privateChangedResourceHandler()).thenReturn(privateChangedResourceHandler);
+        when(internalApiClient.getHttpClient()).thenReturn(httpClient);
+        when(privateChangedResourceHandler.postChangedResource(any(), any())).thenReturn(changedResourcePost);
+        when(changedResourcePost.execute()).thenReturn(response);
+
+        // when
+        publisher.publish(changedResource);
+
+        // then
+        verify(clientPool).borrow();
+        verify(internalApiClient).privateChangedResourceHandler();
+        verify(privateChangedResourceHandler).postChangedResource("/private/resource-changed", changedResource);
+        verify(changedResourcePost).execute();
+        verify(clientPool).release(internalApiClient);
+        verify(circuitBreaker).onSuccess(PERMIT);
+    }
+
+    @Test
+    @DisplayName("Fails fast without calling chs-kafka-api while the circuit is open")
+    void invokeChsKafkaApiCircuitOpen() {
+        // given
+        when(circuitBreaker.tryAcquire()).thenReturn(CircuitBreaker.REFUSED);
+
+        // when
+        Executable actual = () -> publisher.publish(changedResource);
+
+        // then
+        assertThrows(ServiceUnavailableException.class, actual);
+        verifyNoInteractions(clientPool);
+    }
+
+    @Test
+    @DisplayName("A call refused by the client pool is not recorded as a chs-kafka-api failure")
+    void invokeChsKafkaApiPoolExhausted() {
+        // given
+        when(circuitBreaker.tryAcquire()).thenReturn(PERMIT);
+        when(clientPool.borrow()).thenThrow(new ServiceUnavailableException("No chs-kafka-api client available"));
+
+        // when
+        Executable actual = () -> publisher.publish(changedResource);
+
+        // then
+        assertThrows(ServiceUnavailableException.class, actual);
+        verify(circuitBreaker).onIgnored(PERMIT);
+        verify(circuitBreaker, never()).onFailure(anyLong());
+    }
+
+    @Test
+    @DisplayName("The interrupted losing attempt of a hedged call is not recorded as a chs-kafka-api failure")
+    void invokeChsKafkaApiHedgedLoserInterrupted() throws ApiErrorResponseException {
+        // given
+        ChsKafkaApiCircuitBreaker enabledCircuitBreaker = new ChsKafkaApiCircuitBreaker(true, 10, 1, 0.5,
+                Duration.ofSeconds(30), 1, Duration.ofSeconds(30), Instant::now, new SimpleMeterRegistry());
+        ChsKafkaApiRetrier hedgingRetrier = new ChsKafkaApiRetrier(1, Duration.ZERO, Duration.ZERO, List.of(503),
+                Duration.ofSeconds(5), true, 0.95, Duration.ofMillis(20), new SimpleMeterRegistry());
+        ChsKafkaApiResourceChangedPublisher hedgingPublisher =
+                new ChsKafkaApiResourceChangedPublisher(clientPool, enabledCircuitBreaker, hedgingRetrier);
+        when(clientPool.borrow()).thenReturn(internalApiClient);
+        when(internalApiClient.privateChangedResourceHandler()).thenReturn(privateChangedResourceHandler);
+        when(internalApiClient.getHttpClient()).thenReturn(httpClient);
+        when(privateChangedResourceHandler.postChangedResource(any(), any())).thenReturn(changedResourcePost);
+        when(changedResourcePost.execute())
+                .thenAnswer(invocation -> {
+                    // Blocks like a slow call until the retrier interrupts it, as a closed socket would
+                    try {
+                        new CountDownLatch(1).await();
+                        return response;
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new UncheckedIOException(new InterruptedIOException("Closed by interrupt"));
+                    }
+                })
+                .thenReturn(response);
+
+        // when
+        hedgingPublisher.publish(changedResource);
+
+        // then
+        verify(clientPool, timeout(1000).times(2)).release(internalApiClient);
+        assertNotEquals(CircuitBreaker.REFUSED, enabledCircuitBreaker.tryAcquire());
+        hedgingRetrier.shutdown();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "503, Service Unavailable",
+            "500, Internal Server Error",
+            "200, ''"
+    })
+    @DisplayName("Throw service unavailable exception given response codes")
+    void invokeChsKafkaApiError(final int statusCode, final String statusMessage) throws ApiErrorResponseException {
+        // given
+        setupExceptionScenario(statusCode, statusMessage);
+        when(internalApiClient.getHttpClient()).thenReturn(httpClient);
+
+        // when
+        Executable actual = () -> publisher.publish(changedResource);
+
+        // then
+        assertThrows(ServiceUnavailableException.class, actual);
+        verifyExceptionScenario();
+    }
+
+    private void setupExceptionScenario(int statusCode, String statusMessage) throws ApiErrorResponseException {
+        when(circuitBreaker.tryAcquire()).thenReturn(PERMIT);
+        when(clientPool.borrow()).thenReturn(internalApiClient);
+        when(internalApiClient.privateChangedResourceHandler()).thenReturn(privateChangedResourceHandler);
+        when(privateChangedResourceHandler.postChangedResource(any(), any())).thenReturn(changedResourcePost);
+
+        HttpResponseException.Builder builder = new HttpResponseException.Builder(statusCode,
+                statusMessage, new HttpHeaders());
+        ApiErrorResponseException apiErrorResponseException =
+                new ApiErrorResponseException(builder);
+        when(changedResourcePost.execute()).thenThrow(apiErrorResponseException);
+    }
+
+    private void verifyExceptionScenario() throws ApiErrorResponseException {
+        verify(clientPool).borrow();
+        verify(internalApiClient).privateChangedResourceHandler();
+        verify(privateChangedResourceHandler).postChangedResource("/private/resource-changed", changedResource);
+        verify(changedResourcePost).execute();
+        verify(clientPool).release(internalApiClient);
+        verify(circuitBreaker).onFailure(PERMIT);
+    }
+}
@@ -0,0 +1,165 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import uk.gov.companieshouse.api.error.ApiErrorResponseException;
+import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
+
+class ChsKafkaApiRetrierTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    @DisplayName("A call failing with a retryable status is retried until it succeeds")
+    void retriesRetryableStatus() throws ApiErrorResponseException {
+        // given
+        ChsKafkaApiRetrier retrier = retrier(3, false);
+
+        // when
+        retrier.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw error(503);
+            }
+        });
+
+        // then
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("chs.kafka.api.retries").count());
+    }
+
+    @Test
+    @DisplayName("A call failing with a status that is not retryable is not retried")
+    void doesNotRetryOtherStatus() {
+        // given
+        ChsKafkaApiRetrier retrier = retrier(3, false);
+        ApiErrorResponseException error = error(400);
+
+        // when
+        ApiErrorResponseException actual = assertThrows(ApiErrorResponseException.class,
+                () -> retrier.execute(() -> {
+                    attempts.incrementAndGet();
+                    throw error;
+                }));
+
+        // then
+        assertSame(error, actual);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    @DisplayName("The failure of the last attempt is thrown once the attempts are used up")
+    void givesUpAfterMaximumAttempts() {
+        // given
+        ChsKafkaApiRetrier retrier = retrier(3, false);
+
+        // when
+        ApiErrorResponseException actual = assertThrows(ApiErrorResponseException.class,
+                () -> retrier.execute(() -> {
+                    attempts.incrementAndGet();
+                    throw error(503);
+                }));
+
+        // then
+        assertEquals(503, actual.getStatusCode());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    @DisplayName("A slow call is hedged, and the first attempt to succeed is taken")
+    void hedgesSlowCall() throws Exception {
+        // given
+        ChsKafkaApiRetrier retrier = retrier(1, true);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // when
+        retrier.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                awaitQuietly(release);
+            }
+        });
+        release.countDown();
+
+        // then
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("chs.kafka.api.hedges").count());
+    }
+
+    @Test
+    @DisplayName("The losing attempt of a hedged call is interrupted once the other succeeds")
+    void interruptsLosingAttempt() throws Exception {
+        // given
+        ChsKafkaApiRetrier retrier = retrier(1, true);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        // when
+        retrier.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                try {
+                    new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    interrupted.countDown();
+                }
+            }
+        });
+
+        // then
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("A call without hedging is given up at the deadline, and interrupted")
+    void deadlineWithoutHedging() throws Exception {
+        // given
+        ChsKafkaApiRetrier retrier = new ChsKafkaApiRetrier(3, Duration.ofMillis(1), Duration.ofMillis(5),
+                List.of(500, 503), Duration.ofMillis(50), false, 0.95, Duration.ofMillis(20), meterRegistry);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        // when
+        Executable actual = () -> retrier.execute(() -> {
+            attempts.incrementAndGet();
+            try {
+                new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                interrupted.countDown();
+            }
+        });
+
+        // then
+        assertThrows(ServiceUnavailableException.class, actual);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, attempts.get());
+    }
+
+    private ChsKafkaApiRetrier retrier(int maximumAttempts, boolean hedgeEnabled) {
+        return new ChsKafkaApiRetrier(maximumAttempts, Duration.ofMillis(1), Duration.ofMillis(5),
+                List.of(500, 503), Duration.ofSeconds(5), hedgeEnabled, 0.95, Duration.ofMillis(20),
+                meterRegistry);
+    }
+
+    private static ApiErrorResponseException error(int statusCode) {
+        return new ApiErrorResponseException(new HttpResponseException.Builder(statusCode, null, new HttpHeaders()));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
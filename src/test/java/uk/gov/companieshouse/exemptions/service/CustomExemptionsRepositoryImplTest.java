@@ -0,0 +1,329 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.bulk.BulkWriteError;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.model.Created;
+import uk.gov.companieshouse.exemptions.model.Updated;
+import uk.gov.companieshouse.exemptions.model.UpsertOutcome;
+
+@ExtendWith(MockitoExtension.class)
+class CustomExemptionsRepositoryImplTest {
+
+    private static final String COMPANY_NUMBER = "12345678";
+    private static final String DELTA_AT = "20240219123045999999";
+    private static final long DELTA_AT_MICROS = 1708345845999999L;
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2024, 2, 19, 12, 30, 45);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @InjectMocks
+    private CustomExemptionsRepositoryImpl repository;
+
+    private CompanyExemptionsDocument document;
+
+    @BeforeEach
+    void setUp() {
+        document = new CompanyExemptionsDocument()
+                .setId(COMPANY_NUMBER)
+                .setData(new CompanyExemptions())
+                .setDeltaAt(DELTA_AT)
+                .setUpdated(new Updated(UPDATED_AT));
+    }
+
+    @Test
+    @DisplayName("Query matches the document unless its delta_at is later than the request")
+    void notStaleQuery() {
+        // when
+        Query actual = CustomExemptionsRepositoryImpl.notStaleQuery(document);
+
+        // then
+        assertEquals(new Document("_id", COMPANY_NUMBER)
+                .append("$or", List.of(
+                        new Document("delta_at", null),
+                        new Document("delta_at", new Document("$lte", DELTA_AT)))),
+                actual.getQueryObject());
+    }
+
+    @Test
+    @DisplayName("Query compares the numeric delta_at, and the string for documents not yet backfilled")
+    void notStaleQueryMicros() {
+        // given
+        document.setDeltaAtMicros(DELTA_AT_MICROS);
+
+        // when
+        Query actual = CustomExemptionsRepositoryImpl.notStaleQuery(document);
+
+        // then
+        assertEquals(new Document("_id", COMPANY_NUMBER)
+                .append("$or", List.of(
+                        new Document("delta_at_micros", new Document("$lte", DELTA_AT_MICROS)),
+                        new Document("$and", List.of(
+                                new Document("delta_at_micros", null),
+                                new Document("$or", List.of(
+                                        new Document("delta_at", null),
+                                        new Document("delta_at", new Document("$lte", DELTA_AT)))))))),
+                actual.getQueryObject());
+    }
+
+    @Test
+    @DisplayName("Backfill query finds string delta_at without a numeric one, after the given id")
+    void withoutDeltaAtMicrosQuery() {
+        // when
+        Query actual = CustomExemptionsRepositoryImpl.withoutDeltaAtMicrosQuery(COMPANY_NUMBER, 10);
+
+        // then
+        assertEquals(new Document("delta_at_micros", new Document("$exists", false))
+                        .append("delta_at", new Document("$type", 2).append("$ne", ""))
+                        .append("_id", new Document("$gt", COMPANY_NUMBER)),
+                actual.getQueryObject());
+        assertEquals(new Document("_id", 1), actual.getSortObject());
+        assertEquals(10, actual.getLimit());
+    }
+
+    @Test
+    @DisplayName("Bloom filter sync query reads the ids of documents created since the given instant")
+    void createdSinceQuery() {
+        // given
+        Instant since = Instant.parse("2024-02-19T12:30:45Z");
+
+        // when
+        Query actual = CustomExemptionsRepositoryImpl.createdSinceQuery(since);
+
+        // then
+        assertEquals(new Document("created.at", new Document("$gte", Date.from(since))), actual.getQueryObject());
+        assertEquals(new Document("_id", 1), actual.getFieldsObject());
+    }
+
+    @Test
+    @DisplayName("Export query continues after the given id in id order, without the rendered body")
+    void afterQuery() {
+        // when
+        Query actual = CustomExemptionsRepositoryImpl.afterQuery(COMPANY_NUMBER);
+
+        // then
+        assertEquals(new Document("_id", new Document("$gt", COMPANY_NUMBER)), actual.getQueryObject());
+        assertEquals(new Document("_id", 1), actual.getSortObject());
+        assertEquals(new Document("rendered", 0).append("rendered_encoding", 0), actual.getFieldsObject());
+    }
+
+    @Test
+    @DisplayName("Export query without a continuation point matches every document")
+    void afterQueryFromStart() {
+        // when
+        Query actual = CustomExemptionsRepositoryImpl.afterQuery(null);
+
+        // then
+        assertEquals(new Document(), actual.getQueryObject());
+    }
+
+    @Test
+    @DisplayName("Update replaces the document fields and keeps created, giving one to a document without it")
+    void upsertUpdate() {
+        // when
+        AggregationUpdate actual = CustomExemptionsRepositoryImpl.upsertUpdate(document);
+
+        // then
+        List<Document> pipeline = actual.toPipeline(Aggregation.DEFAULT_CONTEXT);
+        Document set = pipeline.getFirst().get("$set", Document.class);
+        assertEquals(new Document("$literal", document.getData()), set.get("data"));
+        assertEquals(DELTA_AT, set.get("delta_at"));
+        assertEquals(document.getUpdated(), set.get("updated"));
+        List<Object> created = set.get("created", Document.class).getList("$ifNull", Object.class);
+        assertEquals("$created", created.getFirst());
+        assertEquals(UPDATED_AT, ((Created) created.get(1)).getAt());
+        assertEquals(List.of("rendered", "rendered_encoding"), pipeline.get(1).getList("$unset", String.class));
+    }
+
+    @Test
+    @DisplayName("Update replaces the rendered body when the document has one")
+    void upsertUpdateRendered() {
+        // given
+        document.setRendered(new byte[] {'{', '}'}).setRenderedEncoding("identity");
+
+        // when
+        AggregationUpdate actual = CustomExemptionsRepositoryImpl.upsertUpdate(document);
+
+        // then
+        List<Document> pipeline = actual.toPipeline(Aggregation.DEFAULT_CONTEXT);
+        Document set = pipeline.getFirst().get("$set", Document.class);
+        assertArrayEquals(document.getRendered(), (byte[]) set.get("rendered"));
+        assertEquals("identity", set.get("rendered_encoding"));
+        assertEquals(1, pipeline.size());
+    }
+
+    @Test
+    @DisplayName("Upsert succeeds with a single conditional upsert")
+    void upsertIfNotStale() {
+        // when
+        boolean actual = repository.upsertIfNotStale(document);
+
+        // then
+        assertTrue(actual);
+        verify(mongoTemplate).upsert(any(Query.class), any(AggregationUpdate.class), eq(CompanyExemptionsDocument.class));
+        verifyNoMoreInteractions(mongoTemplate);
+    }
+
+    @Test
+    @DisplayName("Upsert is retried once when a concurrent insert won the race")
+    void upsertIfNotStaleConcurrentInsert() {
+        // given
+        when(mongoTemplate.upsert(any(Query.class), any(AggregationUpdate.class), eq(CompanyExemptionsDocument.class)))
+                .thenThrow(new DuplicateKeyException("E11000"))
+                .thenReturn(null);
+
+        // when
+        boolean actual = repository.upsertIfNotStale(document);
+
+        // then
+        assertTrue(actual);
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), any(AggregationUpdate.class), eq(CompanyExemptionsDocument.class));
+    }
+
+    @Test
+    @DisplayName("Upsert is rejected when the stored document is newer")
+    void upsertIfNotStaleRejected() {
+        // given
+        when(mongoTemplate.upsert(any(Query.class), any(AggregationUpdate.class), eq(CompanyExemptionsDocument.class)))
+                .thenThrow(new DuplicateKeyException("E11000"));
+
+        // when
+        boolean actual = repository.upsertIfNotStale(document);
+
+        // then
+        assertFalse(actual);
+    }
+
+    @Test
+    @DisplayName("Upsert in a transaction checks for a newer document instead of relying on a duplicate key")
+    void upsertIfNotStaleInTransaction() {
+        // given
+        when(mongoTemplate.exists(CustomExemptionsRepositoryImpl.staleQuery(document), CompanyExemptionsDocument.class))
+                .thenReturn(true);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        // when
+        boolean actual;
+        try {
+            actual = repository.upsertIfNotStale(document);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        // then
+        assertFalse(actual);
+        verify(mongoTemplate, times(0)).upsert(any(Query.class), any(AggregationUpdate.class), eq(CompanyExemptionsDocument.class));
+    }
+
+    @Test
+    @DisplayName("Batch upsert writes every document in one unordered bulk write")
+    void upsertAllIfNotStale() {
+        // given
+        CompanyExemptionsDocument other = getDocument("87654321");
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, CompanyExemptionsDocument.class)).thenReturn(bulkOperations);
+
+        // when
+        Map<String, UpsertOutcome> actual = repository.upsertAllIfNotStale(List.of(document, other));
+
+        // then
+        assertEquals(Map.of(COMPANY_NUMBER, UpsertOutcome.UPSERTED, "87654321", UpsertOutcome.UPSERTED), actual);
+        verify(bulkOperations, times(2)).upsert(any(Query.class), any(AggregationUpdate.class));
+        verify(bulkOperations).execute();
+        verifyNoMoreInteractions(bulkOperations);
+    }
+
+    @Test
+    @DisplayName("Batch upsert retries duplicate keys once and reports other write errors as failed")
+    void upsertAllIfNotStaleWriteErrors() {
+        // given
+        CompanyExemptionsDocument stale = getDocument("87654321");
+        CompanyExemptionsDocument failed = getDocument("11111111");
+        BulkOperationException firstAttempt = bulkOperationException(writeError(11000, 1), writeError(50, 2));
+        BulkOperationException secondAttempt = bulkOperationException(writeError(11000, 0));
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, CompanyExemptionsDocument.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(firstAttempt).thenThrow(secondAttempt);
+
+        // when
+        Map<String, UpsertOutcome> actual = repository.upsertAllIfNotStale(List.of(document, stale, failed));
+
+        // then
+        assertEquals(Map.of(
+                COMPANY_NUMBER, UpsertOutcome.UPSERTED,
+                "87654321", UpsertOutcome.STALE,
+                "11111111", UpsertOutcome.FAILED), actual);
+        verify(bulkOperations, times(4)).upsert(any(Query.class), any(AggregationUpdate.class));
+        verify(bulkOperations, times(2)).execute();
+    }
+
+    @Test
+    @DisplayName("Batch upsert succeeds on retry when a concurrent insert won the race")
+    void upsertAllIfNotStaleConcurrentInsert() {
+        // given
+        BulkOperationException firstAttempt = bulkOperationException(writeError(11000, 0));
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, CompanyExemptionsDocument.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(firstAttempt).thenReturn(null);
+
+        // when
+        Map<String, UpsertOutcome> actual = repository.upsertAllIfNotStale(List.of(document));
+
+        // then
+        assertEquals(Map.of(COMPANY_NUMBER, UpsertOutcome.UPSERTED), actual);
+    }
+
+    private CompanyExemptionsDocument getDocument(String companyNumber) {
+        return new CompanyExemptionsDocument()
+                .setId(companyNumber)
+                .setData(new CompanyExemptions())
+                .setDeltaAt(DELTA_AT)
+                .setUpdated(new Updated(UPDATED_AT));
+    }
+
+    private static BulkWriteError writeError(int code, int index) {
+        return new BulkWriteError(code, "write error", new BsonDocument(), index);
+    }
+
+    private static BulkOperationException bulkOperationException(BulkWriteError... errors) {
+        BulkOperationException exception = mock(BulkOperationException.class);
+        when(exception.getErrors()).thenReturn(List.of(errors));
+        return exception;
+    }
+}
@@ -0,0 +1,93 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+
+@ExtendWith(MockitoExtension.class)
+class DeltaAtMicrosBackfillTest {
+
+    private static final String DELTA_AT = "20240219123045999999";
+    private static final long DELTA_AT_MICROS = 1708345845999999L;
+
+    @Mock
+    private ExemptionsRepository repository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DeltaAtMicrosBackfill backfill;
+
+    @BeforeEach
+    void setUp() {
+        backfill = new DeltaAtMicrosBackfill(repository, meterRegistry, 2);
+    }
+
+    @Test
+    @DisplayName("Backfills a batch and continues after its last id on the next poll")
+    void backfillNextBatch() {
+        // given
+        when(repository.findWithoutDeltaAtMicros(null, 2)).thenReturn(List.of(
+                new CompanyExemptionsDocument().setId("00000001").setDeltaAt(DELTA_AT),
+                new CompanyExemptionsDocument().setId("00000002").setDeltaAt("not a delta_at")));
+        when(repository.backfillDeltaAtMicros(anyList())).thenReturn(1);
+        when(repository.findWithoutDeltaAtMicros("00000002", 2)).thenReturn(List.of());
+
+        // when
+        backfill.backfillNextBatch();
+        backfill.backfillNextBatch();
+
+        // then
+        verify(repository).backfillDeltaAtMicros(List.of(new CompanyExemptionsDocument()
+                .setId("00000001").setDeltaAt(DELTA_AT).setDeltaAtMicros(DELTA_AT_MICROS)));
+        assertEquals(1.0, meterRegistry.counter("exemptions.delta.at.backfill.documents").count());
+        assertEquals(1.0, meterRegistry.counter("exemptions.delta.at.backfill.invalid").count());
+        assertTrue(backfill.isComplete());
+    }
+
+    @Test
+    @DisplayName("Stops polling once the backfill is complete")
+    void backfillComplete() {
+        // given
+        when(repository.findWithoutDeltaAtMicros(null, 2)).thenReturn(List.of());
+
+        // when
+        backfill.backfillNextBatch();
+        backfill.backfillNextBatch();
+
+        // then
+        verify(repository).findWithoutDeltaAtMicros(null, 2);
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("Retries the same batch on the next poll after a database error")
+    void backfillDatabaseError() {
+        // given
+        when(repository.findWithoutDeltaAtMicros(null, 2))
+                .thenThrow(new DataAccessResourceFailureException("unavailable"))
+                .thenReturn(List.of());
+
+        // when
+        backfill.backfillNextBatch();
+
+        // then
+        assertFalse(backfill.isComplete());
+        backfill.backfillNextBatch();
+        assertTrue(backfill.isComplete());
+    }
+}
@@ -0,0 +1,179 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+@ExtendWith(MockitoExtension.class)
+class ExemptionsBloomFilterTest {
+
+    private static final String COMPANY_NUMBER = "12345678";
+
+    @Mock
+    private ExemptionsRepository repository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Instant now = Instant.parse("2024-02-19T12:30:45Z");
+
+    @Test
+    @DisplayName("A disabled filter reports every company as possibly present and never scans")
+    void disabled() {
+        // given
+        ExemptionsBloomFilter filter = getFilter(false);
+
+        // when
+        filter.start();
+        filter.rebuild();
+        filter.sync();
+
+        // then
+        assertTrue(filter.mightContain(COMPANY_NUMBER));
+        assertFalse(filter.isRunning());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("Companies not found by the rebuild scan are rejected")
+    void rebuild() {
+        // given
+        ExemptionsBloomFilter filter = getFilter(true);
+        when(repository.estimatedCount()).thenReturn(1L);
+        when(repository.streamAllIds(100)).thenReturn(Stream.of(COMPANY_NUMBER));
+
+        // when
+        filter.rebuild();
+
+        // then
+        assertTrue(filter.mightContain(COMPANY_NUMBER));
+        assertFalse(filter.mightContain("87654321"));
+        assertEquals(1.0, meterRegistry.get("exemptions.bloom.filter.rejections").counter().count());
+        assertEquals(1L, meterRegistry.get("exemptions.bloom.filter.rebuild").timer().count());
+    }
+
+    @Test
+    @DisplayName("Companies added while the rebuild is scanning are kept in the new filter")
+    void addDuringRebuild() {
+        // given
+        ExemptionsBloomFilter filter = getFilter(true);
+        when(repository.estimatedCount()).thenReturn(1L);
+        when(repository.streamAllIds(100)).thenReturn(Stream.of(COMPANY_NUMBER)
+                .peek(companyNumber -> filter.add("87654321")));
+
+        // when
+        filter.rebuild();
+
+        // then
+        assertTrue(filter.mightContain("87654321"));
+    }
+
+    @Test
+    @DisplayName("Companies added after a rebuild are not rejected")
+    void addAfterRebuild() {
+        // given
+        ExemptionsBloomFilter filter = getFilter(true);
+        when(repository.estimatedCount()).thenReturn(0L);
+        when(repository.streamAllIds(100)).thenReturn(Stream.empty());
+        filter.rebuild();
+
+        // when
+        filter.add(COMPANY_NUMBER);
+
+        // then
+        assertTrue(filter.mightContain(COMPANY_NUMBER));
+    }
+
+    @Test
+    @DisplayName("A failed rebuild keeps serving lookups without rejecting anything")
+    void rebuildFailure() {
+        // given
+        ExemptionsBloomFilter filter = getFilter(true);
+        when(repository.estimatedCount()).thenThrow(new DataAccessResourceFailureException("Mongo unavailable"));
+
+        // when
+        filter.rebuild();
+
+        // then
+        assertTrue(filter.mightContain(COMPANY_NUMBER));
+        assertEquals(1.0, meterRegistry.get("exemptions.bloom.filter.rebuild.failures").counter().count());
+    }
+
+    @Test
+    @DisplayName("Adds older than the write grace are not replayed into a rebuilt filter")
+    void pruneRecentAdds() {
+        // given
+        ExemptionsBloomFilter filter = getFilter(true);
+        filter.add(COMPANY_NUMBER);
+        now = now.plus(Duration.ofMinutes(2));
+        filter.pruneRecentAdds();
+        when(repository.estimatedCount()).thenReturn(0L);
+        when(repository.streamAllIds(100)).thenReturn(Stream.empty());
+
+        // when
+        filter.rebuild();
+
+        // then
+        assertFalse(filter.mightContain(COMPANY_NUMBER));
+    }
+
+    @Test
+    @DisplayName("Companies created by other nodes are found by the sync, reading back over the write grace")
+    void sync() {
+        // given
+        ExemptionsBloomFilter filter = getFilter(true);
+        when(repository.estimatedCount()).thenReturn(0L);
+        when(repository.streamAllIds(100)).thenReturn(Stream.empty());
+        filter.rebuild();
+        Instant rebuiltAt = now;
+        now = now.plusSeconds(1);
+        when(repository.streamIdsCreatedSince(rebuiltAt.minus(Duration.ofMinutes(1)), 100))
+                .thenReturn(Stream.of(COMPANY_NUMBER));
+
+        // when
+        filter.sync();
+
+        // then
+        assertTrue(filter.mightContain(COMPANY_NUMBER));
+        assertFalse(filter.mightContain("87654321"));
+    }
+
+    @Test
+    @DisplayName("Nothing is rejected once the filter has gone several sync intervals without a sync")
+    void staleSync() {
+        // given
+        ExemptionsBloomFilter filter = getFilter(true);
+        when(repository.estimatedCount()).thenReturn(0L);
+        when(repository.streamAllIds(100)).thenReturn(Stream.empty());
+        filter.rebuild();
+        when(repository.streamIdsCreatedSince(any(), eq(100)))
+                .thenThrow(new DataAccessResourceFailureException("Mongo unavailable"));
+        now = now.plusSeconds(4);
+
+        // when
+        filter.sync();
+
+        // then
+        assertTrue(filter.mightContain(COMPANY_NUMBER));
+        assertEquals(1.0, meterRegistry.get("exemptions.bloom.filter.sync.failures").counter().count());
+        assertEquals(0.0, meterRegistry.get("exemptions.bloom.filter.rejections").counter().count());
+    }
+
+    private ExemptionsBloomFilter getFilter(boolean enabled) {
+        return new ExemptionsBloomFilter(repository, () -> now, meterRegistry, enabled, 1000, 0.01,
+                Duration.ofMinutes(1), 100, Duration.ofHours(6), Duration.ofSeconds(1));
+    }
+}
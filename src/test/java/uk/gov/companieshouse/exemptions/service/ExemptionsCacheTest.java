@@ -0,0 +1,165 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.exemptions.exception.NotFoundException;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+
+class ExemptionsCacheTest {
+
+    private static final String COMPANY_NUMBER = "12345678";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExemptionsCache cache = new ExemptionsCache(10, Duration.ofMinutes(1), meterRegistry);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    @DisplayName("Loaded documents are served from the cache until invalidated")
+    void loadedDocumentIsCachedUntilInvalidated() {
+        // given
+        final var document = new CompanyExemptionsDocument().setId(COMPANY_NUMBER);
+
+        // when
+        cache.getOrLoad(COMPANY_NUMBER, id -> load(document));
+        final var cached = cache.getOrLoad(COMPANY_NUMBER, id -> load(document));
+        cache.invalidate(COMPANY_NUMBER);
+        cache.getOrLoad(COMPANY_NUMBER, id -> load(document));
+
+        // then
+        assertSame(document, cached);
+        assertEquals(2, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Documents loaded while an invalidation happens are not cached")
+    void documentLoadedDuringInvalidationIsNotCached() {
+        // given
+        final var document = new CompanyExemptionsDocument().setId(COMPANY_NUMBER);
+
+        // when
+        cache.getOrLoad(COMPANY_NUMBER, id -> {
+            cache.invalidate(COMPANY_NUMBER);
+            return load(document);
+        });
+        cache.getOrLoad(COMPANY_NUMBER, id -> load(document));
+
+        // then
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Documents loaded while another company is invalidated are still cached")
+    void documentLoadedDuringOtherInvalidationIsCached() {
+        // given
+        final var document = new CompanyExemptionsDocument().setId(COMPANY_NUMBER);
+        final var other = new CompanyExemptionsDocument().setId("12345679");
+
+        // when
+        cache.getOrLoad(COMPANY_NUMBER, id -> {
+            cache.invalidate("12345679");
+            return load(document);
+        });
+        cache.getAllOrLoad(List.of("12345679"), ids -> {
+            cache.invalidate("00000001");
+            return Map.of("12345679", load(other));
+        });
+
+        // then
+        assertEquals(2, loads.get());
+        assertSame(document, cache.get(COMPANY_NUMBER).orElseThrow());
+        assertSame(other, cache.get("12345679").orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Concurrent misses for the same company share one load")
+    void concurrentMissesShareOneLoad() throws Exception {
+        // given
+        final var document = new CompanyExemptionsDocument().setId(COMPANY_NUMBER);
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var leader = CompletableFuture.supplyAsync(() -> cache.getOrLoad(COMPANY_NUMBER, id -> {
+            started.countDown();
+            await(release);
+            return load(document);
+        }));
+        await(started);
+
+        // when
+        final var follower = CompletableFuture.supplyAsync(() -> cache.getOrLoad(COMPANY_NUMBER, id -> load(document)));
+        final var coalesced = meterRegistry.get("cache.loads.coalesced").functionCounter();
+        for (int i = 0; i < 5000 && coalesced.count() < 1; i++) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        // then
+        assertSame(document, leader.get(5, TimeUnit.SECONDS));
+        assertSame(document, follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Bulk loads only the missing documents with one call to the loader")
+    void getAllOrLoadLoadsMissesOnce() {
+        // given
+        final var cached = new CompanyExemptionsDocument().setId(COMPANY_NUMBER);
+        final var loaded = new CompanyExemptionsDocument().setId("87654321");
+        cache.getOrLoad(COMPANY_NUMBER, id -> cached);
+
+        // when
+        final var actual = cache.getAllOrLoad(List.of(COMPANY_NUMBER, "87654321", "11111111"), misses -> {
+            assertEquals(List.of("87654321", "11111111"), misses);
+            loads.incrementAndGet();
+            return Map.of("87654321", loaded);
+        });
+        final var again = cache.getAllOrLoad(List.of("87654321"), misses -> Map.of());
+
+        // then
+        assertEquals(Map.of(COMPANY_NUMBER, cached, "87654321", loaded), actual);
+        assertEquals(Map.of("87654321", loaded), again);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Loader exceptions are propagated and nothing is cached")
+    void loaderExceptionIsPropagated() {
+        // when
+        assertThrows(NotFoundException.class, () -> cache.getOrLoad(COMPANY_NUMBER, id -> {
+            loads.incrementAndGet();
+            throw new NotFoundException("not found");
+        }));
+        assertThrows(NotFoundException.class, () -> cache.getOrLoad(COMPANY_NUMBER, id -> {
+            loads.incrementAndGet();
+            throw new NotFoundException("not found");
+        }));
+
+        // then
+        assertEquals(2, loads.get());
+    }
+
+    private CompanyExemptionsDocument load(CompanyExemptionsDocument document) {
+        loads.incrementAndGet();
+        return document;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
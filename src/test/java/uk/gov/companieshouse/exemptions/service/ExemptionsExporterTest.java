@@ -0,0 +1,93 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.databind.json.JsonMapper;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions.KindEnum;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+
+@ExtendWith(MockitoExtension.class)
+class ExemptionsExporterTest {
+
+    @Mock
+    private ExemptionsRepository repository;
+
+    private ExemptionsExporter exporter;
+
+    @BeforeEach
+    void setUp() {
+        exporter = new ExemptionsExporter(repository, new JsonMapper(), 500);
+    }
+
+    @Test
+    @DisplayName("Writes one JSON line per company and closes the cursor")
+    void export() {
+        // given
+        AtomicBoolean closed = new AtomicBoolean();
+        CompanyExemptions exemptions = new CompanyExemptions();
+        exemptions.setKind(KindEnum.EXEMPTIONS);
+        when(repository.streamAllAfter("00000001", 500)).thenReturn(Stream.of(
+                        new CompanyExemptionsDocument().setId("00000002").setData(exemptions),
+                        new CompanyExemptionsDocument().setId("00000003").setData(exemptions))
+                .onClose(() -> closed.set(true)));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        exporter.export("00000001", outputStream);
+
+        // then
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"company_number\":\"00000002\",\"exemptions\":{"));
+        assertTrue(lines[1].startsWith("{\"company_number\":\"00000003\""));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    @DisplayName("Leaves the output stream open for the caller")
+    void exportDoesNotCloseStream() {
+        // given
+        AtomicBoolean closed = new AtomicBoolean();
+        when(repository.streamAllAfter(null, 500)).thenReturn(Stream.empty());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        // when
+        exporter.export(null, outputStream);
+
+        // then
+        assertFalse(closed.get());
+    }
+
+    @Test
+    @DisplayName("Writes nothing when there are no companies after the continuation point")
+    void exportEmpty() {
+        // given
+        when(repository.streamAllAfter(null, 500)).thenReturn(Stream.empty());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        exporter.export(null, outputStream);
+
+        // then
+        assertEquals(0, outputStream.size());
+    }
+}
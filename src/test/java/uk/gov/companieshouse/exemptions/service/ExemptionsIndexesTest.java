@@ -0,0 +1,45 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+@ExtendWith(MockitoExtension.class)
+class ExemptionsIndexesTest {
+
+    @Mock
+    private ExemptionsRepository repository;
+
+    @InjectMocks
+    private ExemptionsIndexes indexes;
+
+    @Test
+    @DisplayName("Creates the delta_at_micros index")
+    void createIndexes() {
+        // when
+        indexes.createIndexes();
+
+        // then
+        verify(repository).createDeltaAtMicrosIndex();
+    }
+
+    @Test
+    @DisplayName("A failure to create an index does not stop startup")
+    void createIndexesFails() {
+        // given
+        doThrow(new DataAccessResourceFailureException("unavailable")).when(repository).createDeltaAtMicrosIndex();
+
+        // when
+        indexes.createIndexes();
+
+        // then
+        verify(repository).createDeltaAtMicrosIndex();
+    }
+}
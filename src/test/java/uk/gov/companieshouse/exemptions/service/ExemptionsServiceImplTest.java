@@ -4,12 +4,20 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.anyList;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
@@ -17,7 +25,10 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import org.bson.RawBsonDocument;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -25,11 +36,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.function.Executable;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
 import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
 import uk.gov.companieshouse.api.exemptions.CompanyExemptions.KindEnum;
 import uk.gov.companieshouse.api.exemptions.ExemptionItem;
 import uk.gov.companieshouse.api.exemptions.Exemptions;
+import uk.gov.companieshouse.api.exemptions.ExemptionsUpdateData;
 import uk.gov.companieshouse.api.exemptions.InternalData;
 import uk.gov.companieshouse.api.exemptions.InternalExemptionsApi;
 import uk.gov.companieshouse.api.exemptions.PscExemptAsTradingOnRegulatedMarketItem;
@@ -39,9 +53,12 @@ import uk.gov.companieshouse.exemptions.exception.ConflictException;
 import uk.gov.companieshouse.exemptions.exception.NotFoundException;
 import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
 import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
-import uk.gov.companieshouse.exemptions.model.Created;
+import uk.gov.companieshouse.exemptions.model.ExemptionsBatchItem;
+import uk.gov.companieshouse.exemptions.model.ExemptionsBatchResult;
 import uk.gov.companieshouse.exemptions.model.ResourceChangedRequest;
+import uk.gov.companieshouse.exemptions.model.UpsertOutcome;
 import uk.gov.companieshouse.exemptions.model.Updated;
+import uk.gov.companieshouse.exemptions.util.DateUtils;
 import uk.gov.companieshouse.exemptions.util.ExemptionsMapper;
 import uk.gov.companieshouse.logging.Logger;
 
@@ -63,6 +80,19 @@ class ExemptionsServiceImplTest {
     @Mock
     private Logger logger;
 
+    @Mock
+    private ResourceChangedOutbox outbox;
+
+    @Mock
+    private ResourceChangedChangeStream changeStream;
+
+    @Spy
+    private ExemptionsBloomFilter bloomFilter = new ExemptionsBloomFilter(null, Instant::now,
+            new SimpleMeterRegistry(), false, 1, 0.01, Duration.ofMinutes(1), 1);
+
+    @Spy
+    private ExemptionsCache cache = new ExemptionsCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
     @InjectMocks
     private ExemptionsServiceImpl service;
 
@@ -89,135 +119,252 @@ class ExemptionsServiceImplTest {
     @DisplayName("Upsert successful insert and call to chs kafka api")
     void insertCompanyExemptions() {
         // given
-        when(repository.findById(COMPANY_NUMBER)).thenReturn(Optional.empty());
         when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
+        when(repository.upsertIfNotStale(mappedExemptionsDocument)).thenReturn(true);
 
         // when
         service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
 
         // then
-        assertNotNull(mappedExemptionsDocument.getCreated().getAt());
+        verify(bloomFilter).add(COMPANY_NUMBER);
+        verify(repository).upsertIfNotStale(mappedExemptionsDocument);
         verify(exemptionsApiService).invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
-        verify(repository).save(mappedExemptionsDocument);
+        verifyNoMoreInteractions(repository);
     }
 
     @Test
-    @DisplayName("Upsert successful update and call to chs kafka api")
-    void updateCompanyExemptions() {
+    @DisplayName("Upsert errors with conflict for exemptions record with out of date delta")
+    void outOfDateDelta() {
         // given
-        existingDocument.setCreated(new Created().setAt(LocalDateTime.of(2022, 11, 2, 15, 55)));
-        when(repository.findById(COMPANY_NUMBER)).thenReturn(Optional.of(existingDocument));
         when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
+        when(repository.upsertIfNotStale(mappedExemptionsDocument)).thenReturn(false);
 
         // when
-        service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
+        Executable actual = () -> service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
 
         // then
-        assertEquals(LocalDateTime.of(2022, 11, 2, 15, 55), mappedExemptionsDocument.getCreated().getAt());
-        verify(exemptionsApiService).invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
-        verify(repository).save(mappedExemptionsDocument);
+        assertThrows(ConflictException.class, actual);
+        verifyNoInteractions(exemptionsApiService);
+        verify(cache, never()).invalidate(any());
     }
 
     @Test
-    @DisplayName("Upsert errors with conflict for exemptions record with out of date delta")
-    void outOfDateDelta() {
+    @DisplayName("Upsert errors with service unavailable when upsert to repository throws data access exception")
+    void saveToRepositoryError() {
         // given
-        requestBody.getInternalData().setDeltaAt(OffsetDateTime.of(2018,1,1,0,0,0,0,ZoneOffset.UTC));
-        when(repository.findById(any())).thenReturn(Optional.of(existingDocument));
+        when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
+        when(repository.upsertIfNotStale(mappedExemptionsDocument))
+                .thenThrow(new DataAccessResourceFailureException("Mongo unavailable"));
 
         // when
         Executable actual = () -> service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
 
         // then
-        assertThrows(ConflictException.class, actual);
+        assertThrows(ServiceUnavailableException.class, actual);
+        verify(repository).upsertIfNotStale(mappedExemptionsDocument);
         verifyNoInteractions(exemptionsApiService);
-        verifyNoMoreInteractions(repository);
     }
 
     @Test
-    @DisplayName("Upsert should update exemptions if existing document has no delta_at field")
-    void updateExemptionsDeltaAtAbsent() {
+    @DisplayName("Upsert errors with service unavailable when chs-kafka-api unavailable")
+    void updateCompanyExemptionsServerError() {
         // given
-        existingDocument.setDeltaAt(null);
-        existingDocument.setCreated(new Created().setAt(LocalDateTime.of(2022, 11, 2, 15, 55)));
-        when(repository.findById(COMPANY_NUMBER)).thenReturn(Optional.of(existingDocument));
         when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
+        when(repository.upsertIfNotStale(mappedExemptionsDocument)).thenReturn(true);
+        doThrow(ServiceUnavailableException.class).when(exemptionsApiService).invokeChsKafkaApi(any());
 
         // when
-        service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
+        Executable actual = () -> service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
 
         // then
-        assertEquals(LocalDateTime.of(2022, 11, 2, 15, 55), mappedExemptionsDocument.getCreated().getAt());
+        assertThrows(ServiceUnavailableException.class, actual);
+        verify(repository).upsertIfNotStale(mappedExemptionsDocument);
         verify(exemptionsApiService).invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
-        verify(repository).save(mappedExemptionsDocument);
     }
 
     @Test
-    @DisplayName("Upsert errors with service unavailable when save to repository throws data access exception on findById")
-    void saveToRepositoryFindError() {
+    @DisplayName("Upsert errors with bad request when chs-kafka-api throws illegal argument exception")
+    void updateCompanyExemptionsIllegalArg() {
         // given
-        when(repository.findById(COMPANY_NUMBER)).thenThrow(ServiceUnavailableException.class);
+        when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
+        when(repository.upsertIfNotStale(mappedExemptionsDocument)).thenReturn(true);
+        doThrow(IllegalArgumentException.class).when(exemptionsApiService).invokeChsKafkaApi(any());
 
         // when
         Executable actual = () -> service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
 
         // then
-        assertThrows(ServiceUnavailableException.class, actual);
+        assertThrows(BadRequestException.class, actual);
+        verify(repository).upsertIfNotStale(mappedExemptionsDocument);
+        verify(exemptionsApiService).invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+    }
+
+    @Test
+    @DisplayName("Upsert with the outbox enabled records the notification in the same transaction")
+    void upsertCompanyExemptionsOutbox() {
+        // given
+        givenOutboxEnabled();
+        when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
+        when(repository.upsertIfNotStale(mappedExemptionsDocument)).thenReturn(true);
+
+        // when
+        service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
+
+        // then
+        verify(outbox).executeInTransaction(any());
+        verify(outbox).add(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+        verify(cache).invalidate(COMPANY_NUMBER);
         verifyNoInteractions(exemptionsApiService);
-        verifyNoMoreInteractions(repository);
     }
 
     @Test
-    @DisplayName("Upsert errors with service unavailable when save to repository throws data access exception")
-    void saveToRepositoryError() {
+    @DisplayName("Upsert with the outbox enabled does not record a notification for an out of date delta")
+    void upsertCompanyExemptionsOutboxOutOfDateDelta() {
         // given
-        when(repository.findById(COMPANY_NUMBER)).thenReturn(Optional.empty());
+        givenOutboxEnabled();
         when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
-        when(repository.save(mappedExemptionsDocument)).thenThrow(ServiceUnavailableException.class);
+        when(repository.upsertIfNotStale(mappedExemptionsDocument)).thenReturn(false);
 
         // when
         Executable actual = () -> service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
 
         // then
-        assertThrows(ServiceUnavailableException.class, actual);
-        verify(repository).save(mappedExemptionsDocument);
+        assertThrows(ConflictException.class, actual);
+        verify(outbox, never()).add(any());
         verifyNoInteractions(exemptionsApiService);
     }
 
     @Test
-    @DisplayName("Upsert errors with service unavailable when chs-kafka-api unavailable")
-    void updateCompanyExemptionsServerError() {
+    @DisplayName("Batch upsert returns a status per item in request order")
+    void upsertCompanyExemptionsBatch() {
         // given
-        when(repository.findById(COMPANY_NUMBER)).thenReturn(Optional.empty());
+        requestBody.setExternalData(new ExemptionsUpdateData());
+        CompanyExemptionsDocument staleDocument = new CompanyExemptionsDocument().setId("87654321");
+        CompanyExemptionsDocument failedDocument = new CompanyExemptionsDocument().setId("11111111");
         when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
-        doThrow(ServiceUnavailableException.class).when(exemptionsApiService).invokeChsKafkaApi(any());
+        when(mapper.map("87654321", requestBody)).thenReturn(staleDocument);
+        when(mapper.map("11111111", requestBody)).thenReturn(failedDocument);
+        when(repository.upsertAllIfNotStale(anyList())).thenReturn(Map.of(
+                COMPANY_NUMBER, UpsertOutcome.UPSERTED,
+                "87654321", UpsertOutcome.STALE,
+                "11111111", UpsertOutcome.FAILED));
 
         // when
-        Executable actual = () -> service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
+        List<ExemptionsBatchResult> actual = service.upsertCompanyExemptionsBatch(List.of(
+                new ExemptionsBatchItem(COMPANY_NUMBER, requestBody),
+                new ExemptionsBatchItem("87654321", requestBody),
+                new ExemptionsBatchItem("11111111", requestBody),
+                new ExemptionsBatchItem("22222222", new InternalExemptionsApi()),
+                new ExemptionsBatchItem(COMPANY_NUMBER, requestBody)));
 
         // then
-        assertThrows(ServiceUnavailableException.class, actual);
-        verify(repository).findById(COMPANY_NUMBER);
-        verify(repository).save(mappedExemptionsDocument);
+        assertEquals(List.of(
+                new ExemptionsBatchResult(COMPANY_NUMBER, 200),
+                new ExemptionsBatchResult("87654321", 409),
+                new ExemptionsBatchResult("11111111", 503),
+                new ExemptionsBatchResult("22222222", 400),
+                new ExemptionsBatchResult(COMPANY_NUMBER, 400)), actual);
+        verify(repository).upsertAllIfNotStale(List.of(mappedExemptionsDocument, staleDocument, failedDocument));
+        verify(cache).invalidate(COMPANY_NUMBER);
         verify(exemptionsApiService).invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+        verifyNoMoreInteractions(exemptionsApiService);
     }
 
     @Test
-    @DisplayName("Upsert errors with bad request when chs-kafka-api throws illegal argument exception")
-    void updateCompanyExemptionsIllegalArg() {
+    @DisplayName("Batch upsert reports service unavailable for an item when chs-kafka-api unavailable")
+    void upsertCompanyExemptionsBatchServerError() {
         // given
-        when(repository.findById(COMPANY_NUMBER)).thenReturn(Optional.empty());
+        requestBody.setExternalData(new ExemptionsUpdateData());
         when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
-        doThrow(IllegalArgumentException.class).when(exemptionsApiService).invokeChsKafkaApi(any());
+        when(repository.upsertAllIfNotStale(anyList())).thenReturn(Map.of(COMPANY_NUMBER, UpsertOutcome.UPSERTED));
+        doThrow(ServiceUnavailableException.class).when(exemptionsApiService).invokeChsKafkaApi(any());
 
         // when
-        Executable actual = () -> service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
+        List<ExemptionsBatchResult> actual = service.upsertCompanyExemptionsBatch(
+                List.of(new ExemptionsBatchItem(COMPANY_NUMBER, requestBody)));
 
         // then
-        assertThrows(BadRequestException.class, actual);
-        verify(repository).findById(COMPANY_NUMBER);
-        verify(repository).save(mappedExemptionsDocument);
-        verify(exemptionsApiService).invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+        assertEquals(List.of(new ExemptionsBatchResult(COMPANY_NUMBER, 503)), actual);
+    }
+
+    @Test
+    @DisplayName("Batch upsert errors with service unavailable when bulk write throws data access exception")
+    void upsertCompanyExemptionsBatchRepositoryError() {
+        // given
+        requestBody.setExternalData(new ExemptionsUpdateData());
+        when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
+        when(repository.upsertAllIfNotStale(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Mongo unavailable"));
+
+        // when
+        Executable actual = () -> service.upsertCompanyExemptionsBatch(
+                List.of(new ExemptionsBatchItem(COMPANY_NUMBER, requestBody)));
+
+        // then
+        assertThrows(ServiceUnavailableException.class, actual);
+        verifyNoInteractions(exemptionsApiService);
+    }
+
+    @Test
+    @DisplayName("Bulk get reads cache misses with a single query")
+    void getCompanyExemptionsBulk() {
+        // given
+        CompanyExemptionsDocument cached = new CompanyExemptionsDocument().setId("87654321")
+                .setData(new CompanyExemptions());
+        mappedExemptionsDocument.setId(COMPANY_NUMBER);
+        when(repository.findById("87654321")).thenReturn(Optional.of(cached));
+        service.getCompanyExemptionsDocument("87654321");
+        when(repository.findAllWithoutRenderedById(List.of(COMPANY_NUMBER, "11111111"))).thenReturn(List.of(mappedExemptionsDocument));
+
+        // when
+        Map<String, CompanyExemptions> actual = service.getCompanyExemptions(
+                List.of(COMPANY_NUMBER, "87654321", "11111111"));
+
+        // then
+        assertEquals(Map.of(COMPANY_NUMBER, mappedExemptionsDocument.getData(), "87654321", cached.getData()), actual);
+        verify(repository).findAllWithoutRenderedById(List.of(COMPANY_NUMBER, "11111111"));
+    }
+
+    @Test
+    @DisplayName("Get answers not found without a read when the bloom filter rejects the company")
+    void getCompanyExemptionsBloomFilterRejected() {
+        // given
+        doReturn(false).when(bloomFilter).mightContain(COMPANY_NUMBER);
+
+        // when
+        Executable actual = () -> service.getCompanyExemptions(COMPANY_NUMBER);
+
+        // then
+        assertThrows(NotFoundException.class, actual);
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("Bulk get only reads companies the bloom filter does not reject")
+    void getCompanyExemptionsBulkBloomFilterRejected() {
+        // given
+        doReturn(false).when(bloomFilter).mightContain("87654321");
+        when(repository.findAllWithoutRenderedById(List.of(COMPANY_NUMBER))).thenReturn(List.of());
+
+        // when
+        Map<String, CompanyExemptions> actual = service.getCompanyExemptions(List.of(COMPANY_NUMBER, "87654321"));
+
+        // then
+        assertEquals(Map.of(), actual);
+        verify(repository).findAllWithoutRenderedById(List.of(COMPANY_NUMBER));
+    }
+
+    @Test
+    @DisplayName("Bulk get errors with service unavailable when repository throws data access exception")
+    void getCompanyExemptionsBulkDataAccessException() {
+        // given
+        when(repository.findAllWithoutRenderedById(any())).thenThrow(new DataAccessResourceFailureException("Mongo unavailable"));
+
+        // when
+        Executable actual = () -> service.getCompanyExemptions(List.of(COMPANY_NUMBER));
+
+        // then
+        assertThrows(ServiceUnavailableException.class, actual);
     }
 
     @Test
@@ -235,6 +382,125 @@ class ExemptionsServiceImplTest {
         verify(repository).findById(COMPANY_NUMBER);
     }
 
+    @Test
+    @DisplayName("Test repeated calls to get company exemptions are served from the cache")
+    void getCompanyExemptionsCached() {
+        // given
+        when(repository.findById(any())).thenReturn(Optional.of(mappedExemptionsDocument));
+
+        // when
+        service.getCompanyExemptions(COMPANY_NUMBER);
+        CompanyExemptions actual = service.getCompanyExemptions(COMPANY_NUMBER);
+
+        // then
+        assertEquals(getExemptionsData(), actual);
+        verify(repository).findById(COMPANY_NUMBER);
+    }
+
+    @Test
+    @DisplayName("Test upsert invalidates the cached company exemptions")
+    void upsertInvalidatesCachedCompanyExemptions() {
+        // given
+        when(repository.findById(COMPANY_NUMBER)).thenReturn(Optional.of(mappedExemptionsDocument));
+        when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
+        when(repository.upsertIfNotStale(mappedExemptionsDocument)).thenReturn(true);
+        service.getCompanyExemptions(COMPANY_NUMBER);
+
+        // when
+        service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
+        service.getCompanyExemptions(COMPANY_NUMBER);
+
+        // then
+        verify(cache).invalidate(COMPANY_NUMBER);
+        verify(repository, times(2)).findById(COMPANY_NUMBER);
+    }
+
+    @Test
+    @DisplayName("Test get company exemptions version reads the projection when not cached")
+    void getCompanyExemptionsVersion() {
+        // given
+        when(repository.findVersionById(any())).thenReturn(Optional.of(mappedExemptionsDocument));
+
+        // when
+        CompanyExemptionsDocument actual = service.getCompanyExemptionsVersion(COMPANY_NUMBER);
+
+        // then
+        assertEquals(mappedExemptionsDocument, actual);
+        verify(repository).findVersionById(COMPANY_NUMBER);
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("Test get company exemptions version is served from the cache")
+    void getCompanyExemptionsVersionCached() {
+        // given
+        when(repository.findById(any())).thenReturn(Optional.of(mappedExemptionsDocument));
+        service.getCompanyExemptionsDocument(COMPANY_NUMBER);
+
+        // when
+        CompanyExemptionsDocument actual = service.getCompanyExemptionsVersion(COMPANY_NUMBER);
+
+        // then
+        assertEquals(mappedExemptionsDocument, actual);
+        verify(repository).findById(COMPANY_NUMBER);
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("Test get company exemptions version returns not found")
+    void getCompanyExemptionsVersionNotFound() {
+        // given
+        when(repository.findVersionById(any())).thenReturn(Optional.empty());
+
+        // when
+        Executable actual = () -> service.getCompanyExemptionsVersion(COMPANY_NUMBER);
+
+        // then
+        assertThrows(NotFoundException.class, actual);
+    }
+
+    @Test
+    @DisplayName("Test get raw company exemptions reads the document from the database")
+    void getCompanyExemptionsRaw() {
+        // given
+        RawBsonDocument raw = RawBsonDocument.parse("{\"data\": {\"kind\": \"exemptions\"}}");
+        when(repository.findRawById(any())).thenReturn(Optional.of(raw));
+
+        // when
+        RawBsonDocument actual = service.getCompanyExemptionsRaw(COMPANY_NUMBER);
+
+        // then
+        assertEquals(raw, actual);
+        verify(repository).findRawById(COMPANY_NUMBER);
+    }
+
+    @Test
+    @DisplayName("Test get raw company exemptions returns not found for a document without data")
+    void getCompanyExemptionsRawWithoutData() {
+        // given
+        RawBsonDocument raw = RawBsonDocument.parse("{\"updated\": {\"at\": {\"$date\": 0}}}");
+        when(repository.findRawById(any())).thenReturn(Optional.of(raw));
+
+        // when
+        Executable actual = () -> service.getCompanyExemptionsRaw(COMPANY_NUMBER);
+
+        // then
+        assertThrows(NotFoundException.class, actual);
+    }
+
+    @Test
+    @DisplayName("Test get raw company exemptions returns not found")
+    void getCompanyExemptionsRawNotFound() {
+        // given
+        when(repository.findRawById(any())).thenReturn(Optional.empty());
+
+        // when
+        Executable actual = () -> service.getCompanyExemptionsRaw(COMPANY_NUMBER);
+
+        // then
+        assertThrows(NotFoundException.class, actual);
+    }
+
     @Test
     @DisplayName("Test call to get company exemptions returns not found")
     void getCompanyExemptionsNotFound() {
@@ -267,15 +533,33 @@ class ExemptionsServiceImplTest {
     @DisplayName("Test successful call to delete company exemptions")
     void deleteCompanyExemptions() {
         // given
-        when(repository.findById(any())).thenReturn(Optional.of(existingDocument));
+        when(repository.findWithoutRenderedById(any())).thenReturn(Optional.of(existingDocument));
 
         // when
         service.deleteCompanyExemptions(COMPANY_NUMBER, DELTA_AT);
 
         // then
-        verify(repository).findById(COMPANY_NUMBER);
+        verify(repository).findWithoutRenderedById(COMPANY_NUMBER);
         verify(exemptionsApiService).invokeChsKafkaApiDelete(new ResourceChangedRequest(COMPANY_NUMBER, existingDocument, true));
         verify(repository).deleteById(COMPANY_NUMBER);
+        verify(cache).invalidate(COMPANY_NUMBER);
+    }
+
+    @Test
+    @DisplayName("Delete with the outbox enabled records the notification in the same transaction")
+    void deleteCompanyExemptionsOutbox() {
+        // given
+        givenOutboxEnabled();
+        when(repository.findWithoutRenderedById(any())).thenReturn(Optional.of(existingDocument));
+
+        // when
+        service.deleteCompanyExemptions(COMPANY_NUMBER, DELTA_AT);
+
+        // then
+        verify(repository).deleteById(COMPANY_NUMBER);
+        verify(outbox).add(new ResourceChangedRequest(COMPANY_NUMBER, existingDocument, true));
+        verify(cache).invalidate(COMPANY_NUMBER);
+        verifyNoInteractions(exemptionsApiService);
     }
 
     @Test
@@ -298,7 +582,7 @@ class ExemptionsServiceImplTest {
         existingDocument.setDeltaAt(DELTA_AT);
 
         // given
-        when(repository.findById(any())).thenReturn(Optional.of(existingDocument));
+        when(repository.findWithoutRenderedById(any())).thenReturn(Optional.of(existingDocument));
 
         // when
         Executable actual = () -> service
@@ -306,7 +590,36 @@ class ExemptionsServiceImplTest {
 
         // then
         assertThrows(ConflictException.class, actual);
-        verify(repository).findById(COMPANY_NUMBER);
+        verify(repository).findWithoutRenderedById(COMPANY_NUMBER);
+        verifyNoInteractions(exemptionsApiService);
+    }
+
+    @Test
+    @DisplayName("Delete errors with conflict when the numeric delta is stale")
+    void deleteCompanyExemptionsStaleDeltaMicros() {
+        existingDocument.setDeltaAt(null).setDeltaAtMicros(DateUtils.deltaAtMicros(DELTA_AT));
+
+        // given
+        when(repository.findWithoutRenderedById(any())).thenReturn(Optional.of(existingDocument));
+
+        // when
+        Executable actual = () -> service
+                .deleteCompanyExemptions(COMPANY_NUMBER, "20240219123045999998");
+
+        // then
+        assertThrows(ConflictException.class, actual);
+        verifyNoInteractions(exemptionsApiService);
+    }
+
+    @Test
+    @DisplayName("Delete errors with bad request when delta is not a valid delta_at")
+    void deleteCompanyExemptionsInvalidDelta() {
+        // when
+        Executable actual = () -> service.deleteCompanyExemptions(COMPANY_NUMBER, "20241319123045999999");
+
+        // then
+        assertThrows(BadRequestException.class, actual);
+        verifyNoInteractions(repository);
         verifyNoInteractions(exemptionsApiService);
     }
 
@@ -314,13 +627,13 @@ class ExemptionsServiceImplTest {
     @DisplayName("Test call to delete company exemptions is successful when document not found")
     void deleteCompanyExemptionsNotFound() {
         // given
-        when(repository.findById(any())).thenReturn(Optional.empty());
+        when(repository.findWithoutRenderedById(any())).thenReturn(Optional.empty());
 
         // when
         service.deleteCompanyExemptions(COMPANY_NUMBER, DELTA_AT);
 
         // then
-        verify(repository).findById(COMPANY_NUMBER);
+        verify(repository).findWithoutRenderedById(COMPANY_NUMBER);
         verify(exemptionsApiService).invokeChsKafkaApiDelete(new ResourceChangedRequest(COMPANY_NUMBER,
                 new CompanyExemptionsDocument(), true));
     }
@@ -330,7 +643,7 @@ class ExemptionsServiceImplTest {
     void deleteCompanyExemptionsServerError() {
         // given
         existingDocument.setData(new CompanyExemptions());
-        when(repository.findById(any())).thenReturn(Optional.of(existingDocument));
+        when(repository.findWithoutRenderedById(any())).thenReturn(Optional.of(existingDocument));
         doThrow(ServiceUnavailableException.class).when(exemptionsApiService).invokeChsKafkaApiDelete(any());
 
         // when
@@ -338,7 +651,7 @@ class ExemptionsServiceImplTest {
 
         // then
         assertThrows(ServiceUnavailableException.class, actual);
-        verify(repository).findById(COMPANY_NUMBER);
+        verify(repository).findWithoutRenderedById(COMPANY_NUMBER);
         verify(repository).deleteById(COMPANY_NUMBER);
         verify(exemptionsApiService).invokeChsKafkaApiDelete(new ResourceChangedRequest(COMPANY_NUMBER,
                 existingDocument, true));
@@ -349,7 +662,7 @@ class ExemptionsServiceImplTest {
     void deleteCompanyExemptionsServerErrorIllegalArg() {
         // given
         existingDocument.setData(new CompanyExemptions());
-        when(repository.findById(any())).thenReturn(Optional.of(existingDocument));
+        when(repository.findWithoutRenderedById(any())).thenReturn(Optional.of(existingDocument));
         doThrow(IllegalArgumentException.class).when(exemptionsApiService).invokeChsKafkaApiDelete(any());
 
         // when
@@ -357,7 +670,7 @@ class ExemptionsServiceImplTest {
 
         // then
         assertThrows(BadRequestException.class, actual);
-        verify(repository).findById(COMPANY_NUMBER);
+        verify(repository).findWithoutRenderedById(COMPANY_NUMBER);
         verify(repository).deleteById(COMPANY_NUMBER);
         verify(exemptionsApiService).invokeChsKafkaApiDelete(new ResourceChangedRequest(COMPANY_NUMBER,
                 existingDocument, true));
@@ -367,14 +680,14 @@ class ExemptionsServiceImplTest {
     @DisplayName("Delete errors with service unavailable repository throws data access exception on findById")
     void deleteCompanyExemptionsServerErrorDataAccessExceptionFindById() {
         // given
-        when(repository.findById(any())).thenThrow(ServiceUnavailableException.class);
+        when(repository.findWithoutRenderedById(any())).thenThrow(ServiceUnavailableException.class);
 
         // when
         Executable actual = () -> service.deleteCompanyExemptions(COMPANY_NUMBER, DELTA_AT);
 
         // then
         assertThrows(ServiceUnavailableException.class, actual);
-        verify(repository).findById(COMPANY_NUMBER);
+        verify(repository).findWithoutRenderedById(COMPANY_NUMBER);
         verifyNoInteractions(exemptionsApiService);
         verifyNoMoreInteractions(repository);
     }
@@ -384,7 +697,7 @@ class ExemptionsServiceImplTest {
     void deleteCompanyExemptionsServerErrorDataAccessExceptionDeleteById() {
         // given
         existingDocument.setData(new CompanyExemptions());
-        when(repository.findById(any())).thenReturn(Optional.of(existingDocument));
+        when(repository.findWithoutRenderedById(any())).thenReturn(Optional.of(existingDocument));
         doThrow(ServiceUnavailableException.class).when(repository).deleteById(any());
 
         // when
@@ -392,11 +705,53 @@ class ExemptionsServiceImplTest {
 
         // then
         assertThrows(ServiceUnavailableException.class, actual);
-        verify(repository).findById(COMPANY_NUMBER);
+        verify(repository).findWithoutRenderedById(COMPANY_NUMBER);
         verify(repository).deleteById(COMPANY_NUMBER);
         verifyNoInteractions(exemptionsApiService);
     }
 
+    @Test
+    @DisplayName("Upsert leaves the notification to the change stream when it is enabled")
+    void insertCompanyExemptionsChangeStream() {
+        // given
+        when(changeStream.isEnabled()).thenReturn(true);
+        when(mapper.map(COMPANY_NUMBER, requestBody)).thenReturn(mappedExemptionsDocument);
+        when(repository.upsertIfNotStale(mappedExemptionsDocument)).thenReturn(true);
+
+        // when
+        service.upsertCompanyExemptions(COMPANY_NUMBER, requestBody);
+
+        // then
+        verify(repository).upsertIfNotStale(mappedExemptionsDocument);
+        verifyNoInteractions(exemptionsApiService);
+        verifyNoInteractions(outbox);
+    }
+
+    @Test
+    @DisplayName("Delete leaves the notification to the change stream when it is enabled")
+    void deleteCompanyExemptionsChangeStream() {
+        // given
+        when(changeStream.isEnabled()).thenReturn(true);
+        existingDocument.setData(new CompanyExemptions());
+        when(repository.findWithoutRenderedById(COMPANY_NUMBER)).thenReturn(Optional.of(existingDocument));
+
+        // when
+        service.deleteCompanyExemptions(COMPANY_NUMBER, DELTA_AT);
+
+        // then
+        verify(repository).deleteById(COMPANY_NUMBER);
+        verifyNoInteractions(exemptionsApiService);
+        verifyNoInteractions(outbox);
+    }
+
+    private void givenOutboxEnabled() {
+        when(outbox.isEnabled()).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(outbox).executeInTransaction(any());
+    }
+
     private CompanyExemptionsDocument getExemptionsDocument(OffsetDateTime date) {
         existingDocument = new CompanyExemptionsDocument();
         existingDocument.setUpdated(new Updated(LocalDateTime.now()));
@@ -0,0 +1,224 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Date;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
+import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.model.ResourceChangedRequest;
+import uk.gov.companieshouse.exemptions.model.Updated;
+
+@Testcontainers
+class ResourceChangedChangeStreamPublisherIT {
+
+    private static final String COMPANY_NUMBER = "12345678";
+    private static final String DELTA_AT = "20240219123045999999";
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final int MAXIMUM_ATTEMPTS = 3;
+
+    @Container
+    private static final MongoDBContainer MONGO_DB_CONTAINER = new MongoDBContainer(
+            DockerImageName.parse("mongo:7.0.17"));
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private ResourceChangedChangeStream changeStream;
+    private ExemptionsApiService exemptionsApiService;
+    private ResourceChangedChangeStreamPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        mongoClient = MongoClients.create(MONGO_DB_CONTAINER.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(mongoClient, "company_exemptions");
+        mongoTemplate.createCollection(CompanyExemptionsDocument.class);
+        changeStream = new ResourceChangedChangeStream(mongoTemplate, Instant::now, true);
+        exemptionsApiService = mock(ExemptionsApiService.class);
+        publisher = startPublisher();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (publisher.isRunning()) {
+            publisher.stop();
+        }
+        mongoTemplate.dropCollection(CompanyExemptionsDocument.class);
+        mongoTemplate.dropCollection(ResourceChangedChangeStream.COLLECTION);
+        mongoClient.close();
+    }
+
+    @Test
+    @DisplayName("Writes are published as changed and deletes as deleted with the document before the delete")
+    void publishesChanges() {
+        // given
+        var collection = mongoTemplate.getCollection(changeStream.getCollectionName());
+
+        // when
+        collection.insertOne(document(COMPANY_NUMBER));
+        collection.updateOne(Filters.eq("_id", COMPANY_NUMBER), Updates.set("delta_at_micros", 1708345845999999L));
+        collection.deleteOne(Filters.eq("_id", COMPANY_NUMBER));
+
+        // then
+        ArgumentCaptor<ResourceChangedRequest> deleted = ArgumentCaptor.forClass(ResourceChangedRequest.class);
+        verify(exemptionsApiService, timeout(TIMEOUT_MILLIS)).invokeChsKafkaApiDelete(deleted.capture());
+        assertEquals(COMPANY_NUMBER, deleted.getValue().companyNumber());
+        assertEquals(DELTA_AT, deleted.getValue().document().getDeltaAt());
+        // The backfill of delta_at_micros does not set updated, so is not published
+        verify(exemptionsApiService, times(1))
+                .invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+    }
+
+    @Test
+    @DisplayName("An upsert over an existing document is published once")
+    void publishesUpsertOfExistingDocument() {
+        // given
+        var collection = mongoTemplate.getCollection(changeStream.getCollectionName());
+        var repository = new CustomExemptionsRepositoryImpl(mongoTemplate);
+        collection.insertOne(document(COMPANY_NUMBER));
+        verify(exemptionsApiService, timeout(TIMEOUT_MILLIS))
+                .invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+
+        // when
+        boolean upserted = repository.upsertIfNotStale(new CompanyExemptionsDocument()
+                .setId(COMPANY_NUMBER)
+                .setData(new CompanyExemptions())
+                .setDeltaAt("20240219123046000000")
+                .setDeltaAtMicros(1708345846000000L)
+                .setUpdated(new Updated(LocalDateTime.now())));
+        // Changes are published in order, so once this one is, the upsert's has been too
+        collection.insertOne(document("00000002"));
+
+        // then
+        assertTrue(upserted);
+        verify(exemptionsApiService, timeout(TIMEOUT_MILLIS))
+                .invokeChsKafkaApi(new ResourceChangedRequest("00000002", null, false));
+        verify(exemptionsApiService, times(2))
+                .invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+    }
+
+    @Test
+    @DisplayName("Changes made while stopped are published after a restart, from the saved resume token")
+    void resumesAfterRestart() {
+        // given
+        var collection = mongoTemplate.getCollection(changeStream.getCollectionName());
+        collection.insertOne(document(COMPANY_NUMBER));
+        verify(exemptionsApiService, timeout(TIMEOUT_MILLIS))
+                .invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+        publisher.stop();
+
+        // when
+        collection.insertOne(document("00000002"));
+        publisher = startPublisher();
+
+        // then
+        verify(exemptionsApiService, timeout(TIMEOUT_MILLIS))
+                .invokeChsKafkaApi(new ResourceChangedRequest("00000002", null, false));
+        verify(exemptionsApiService, times(1))
+                .invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+    }
+
+    @Test
+    @DisplayName("A change that fails the maximum number of attempts is skipped, and later changes are published")
+    void skipsFailingChange() {
+        // given
+        var collection = mongoTemplate.getCollection(changeStream.getCollectionName());
+        doThrow(new ServiceUnavailableException("Error calling resource changed endpoint"))
+                .when(exemptionsApiService).invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+
+        // when
+        collection.insertOne(document(COMPANY_NUMBER));
+        collection.insertOne(document("00000002"));
+
+        // then
+        verify(exemptionsApiService, timeout(TIMEOUT_MILLIS))
+                .invokeChsKafkaApi(new ResourceChangedRequest("00000002", null, false));
+        verify(exemptionsApiService, times(MAXIMUM_ATTEMPTS))
+                .invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+    }
+
+    @Test
+    @DisplayName("Only the node holding the lease publishes, and another takes over once it stops")
+    void publishesFromOneNode() {
+        // given
+        var collection = mongoTemplate.getCollection(changeStream.getCollectionName());
+        ResourceChangedChangeStreamPublisher standby = startPublisher();
+
+        // when
+        collection.insertOne(document(COMPANY_NUMBER));
+        verify(exemptionsApiService, timeout(TIMEOUT_MILLIS))
+                .invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+        publisher.stop();
+        collection.insertOne(document("00000002"));
+
+        // then
+        try {
+            verify(exemptionsApiService, timeout(TIMEOUT_MILLIS))
+                    .invokeChsKafkaApi(new ResourceChangedRequest("00000002", null, false));
+            verify(exemptionsApiService, times(1))
+                    .invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+        } finally {
+            standby.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("A node that does not hold the lease cannot save the resume token")
+    void onlyLeaseHolderSavesToken() {
+        // given
+        publisher.stop();
+        changeStream.tryAcquireLease("other-node", Duration.ofMinutes(1));
+
+        // when
+        boolean saved = changeStream.saveResumeToken("this-node", new BsonDocument("_data", new BsonString("00")));
+
+        // then
+        assertFalse(saved);
+    }
+
+    private ResourceChangedChangeStreamPublisher startPublisher() {
+        ResourceChangedChangeStreamPublisher started = new ResourceChangedChangeStreamPublisher(mongoTemplate,
+                changeStream, exemptionsApiService, new SimpleMeterRegistry(), Duration.ofMillis(10),
+                Duration.ofMillis(100), Duration.ofMillis(100), Duration.ofSeconds(3), MAXIMUM_ATTEMPTS);
+        started.start();
+        // The stream saves a resume token once it is open, and changes before then are not seen
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (changeStream.findResumeToken().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        return started;
+    }
+
+    private static Document document(String companyNumber) {
+        return new Document("_id", companyNumber)
+                .append("delta_at", DELTA_AT)
+                .append("updated", new Document("at", new Date()));
+    }
+}
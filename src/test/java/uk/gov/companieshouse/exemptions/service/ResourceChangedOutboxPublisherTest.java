@@ -0,0 +1,179 @@
+package uk.gov.companieshouse.exemptions.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
+import uk.gov.companieshouse.exemptions.exception.ServiceUnavailableException;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+import uk.gov.companieshouse.exemptions.model.ResourceChangedOutboxEntry;
+import uk.gov.companieshouse.exemptions.model.ResourceChangedRequest;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceChangedOutboxPublisherTest {
+
+    private static final String COMPANY_NUMBER = "12345678";
+    private static final Instant NOW = Instant.parse("2024-02-19T12:30:45Z");
+    private static final Duration LEASE = Duration.ofSeconds(30);
+
+    @Mock
+    private ResourceChangedOutbox outbox;
+
+    @Mock
+    private ExemptionsApiService exemptionsApiService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ResourceChangedOutboxPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new ResourceChangedOutboxPublisher(outbox, exemptionsApiService, () -> NOW, meterRegistry, 100,
+                LEASE, Duration.ofSeconds(1), Duration.ofMinutes(5), 5);
+    }
+
+    @Test
+    @DisplayName("Publishes due entries and removes them from the outbox")
+    void publishPending() {
+        // given
+        CompanyExemptionsDocument deleted = new CompanyExemptionsDocument().setData(new CompanyExemptions());
+        ResourceChangedOutboxEntry changed = getEntry("1", COMPANY_NUMBER, NOW);
+        ResourceChangedOutboxEntry delete = getEntry("2", "87654321", NOW)
+                .setDelete(true)
+                .setDeletedData(deleted.getData());
+        when(outbox.findDue(NOW, 100)).thenReturn(List.of(changed, delete));
+        when(outbox.claim(any(), any())).thenReturn(true);
+
+        // when
+        publisher.publishPending();
+
+        // then
+        verify(outbox).claim(changed, NOW.plus(LEASE));
+        verify(exemptionsApiService).invokeChsKafkaApi(new ResourceChangedRequest(COMPANY_NUMBER, null, false));
+        verify(outbox).remove(changed);
+        verify(exemptionsApiService).invokeChsKafkaApiDelete(new ResourceChangedRequest("87654321", deleted, true));
+        verify(outbox).remove(delete);
+    }
+
+    @Test
+    @DisplayName("Holds back a company's later entries while an earlier one is not yet due")
+    void publishPendingHoldsBackLaterEntries() {
+        // given
+        ResourceChangedOutboxEntry waiting = getEntry("1", COMPANY_NUMBER, NOW.plusSeconds(10));
+        ResourceChangedOutboxEntry later = getEntry("2", COMPANY_NUMBER, NOW).setCreatedAt(NOW.plusSeconds(1));
+        when(outbox.findDue(NOW, 100)).thenReturn(List.of(later));
+        when(outbox.findWaiting(Set.of(COMPANY_NUMBER), NOW)).thenReturn(List.of(waiting));
+
+        // when
+        publisher.publishPending();
+
+        // then
+        verify(outbox, never()).claim(any(), any());
+        verifyNoInteractions(exemptionsApiService);
+    }
+
+    @Test
+    @DisplayName("Does not query for waiting entries when nothing is due")
+    void publishPendingNothingDue() {
+        // given
+        when(outbox.findDue(NOW, 100)).thenReturn(List.of());
+
+        // when
+        publisher.publishPending();
+
+        // then
+        verify(outbox, never()).findWaiting(any(), any());
+        verifyNoInteractions(exemptionsApiService);
+    }
+
+    @Test
+    @DisplayName("Skips an entry claimed by another instance")
+    void publishPendingClaimedElsewhere() {
+        // given
+        ResourceChangedOutboxEntry entry = getEntry("1", COMPANY_NUMBER, NOW);
+        when(outbox.findDue(NOW, 100)).thenReturn(List.of(entry));
+        when(outbox.claim(entry, NOW.plus(LEASE))).thenReturn(false);
+
+        // when
+        publisher.publishPending();
+
+        // then
+        verifyNoInteractions(exemptionsApiService);
+        verify(outbox, never()).remove(any());
+    }
+
+    @Test
+    @DisplayName("Reschedules a failed entry with backoff and holds back the company's later entries")
+    void publishPendingFailure() {
+        // given
+        ResourceChangedOutboxEntry failing = getEntry("1", COMPANY_NUMBER, NOW).setAttempts(2);
+        ResourceChangedOutboxEntry later = getEntry("2", COMPANY_NUMBER, NOW);
+        when(outbox.findDue(NOW, 100)).thenReturn(List.of(failing, later));
+        when(outbox.claim(failing, NOW.plus(LEASE))).thenReturn(true);
+        doThrow(new ServiceUnavailableException("Error calling resource changed endpoint"))
+                .when(exemptionsApiService).invokeChsKafkaApi(any());
+
+        // when
+        publisher.publishPending();
+
+        // then
+        verify(outbox).reschedule(failing, NOW.plusSeconds(4));
+        verify(outbox, never()).claim(later, NOW.plus(LEASE));
+        verify(outbox, never()).remove(any());
+    }
+
+    @Test
+    @DisplayName("Parks an entry on its last attempt, counts it and goes on to the company's later entries")
+    void publishPendingParksEntry() {
+        // given
+        ResourceChangedOutboxEntry failing = getEntry("1", COMPANY_NUMBER, NOW).setAttempts(4);
+        ResourceChangedOutboxEntry later = getEntry("2", COMPANY_NUMBER, NOW);
+        when(outbox.findDue(NOW, 100)).thenReturn(List.of(failing, later));
+        when(outbox.claim(any(), any())).thenReturn(true);
+        doThrow(new ServiceUnavailableException("Error calling resource changed endpoint"))
+                .doNothing()
+                .when(exemptionsApiService).invokeChsKafkaApi(any());
+
+        // when
+        publisher.publishPending();
+
+        // then
+        verify(outbox).park(failing, NOW);
+        verify(outbox, never()).reschedule(any(), any());
+        verify(outbox).remove(later);
+        assertEquals(1.0, meterRegistry.get("exemptions.outbox.parked").counter().count());
+    }
+
+    @Test
+    @DisplayName("Backoff doubles with each attempt up to the maximum")
+    void backoff() {
+        assertEquals(Duration.ofSeconds(1), publisher.backoff(0));
+        assertEquals(Duration.ofSeconds(8), publisher.backoff(3));
+        assertEquals(Duration.ofMinutes(5), publisher.backoff(20));
+        assertEquals(Duration.ofMinutes(5), publisher.backoff(Integer.MAX_VALUE));
+    }
+
+    private static ResourceChangedOutboxEntry getEntry(String id, String companyNumber, Instant nextAttemptAt) {
+        return new ResourceChangedOutboxEntry()
+                .setId(id)
+                .setCompanyNumber(companyNumber)
+                .setRequestId("request-" + id)
+                .setCreatedAt(NOW)
+                .setNextAttemptAt(nextAttemptAt);
+    }
+}
@@ -0,0 +1,71 @@
+package uk.gov.companieshouse.exemptions.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    private static final int INSERTIONS = 10_000;
+
+    @Test
+    @DisplayName("Added values are always reported as possibly present")
+    void noFalseNegatives() {
+        // given
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+
+        // when
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.put(String.format("%08d", i));
+        }
+
+        // then
+        for (int i = 0; i < INSERTIONS; i++) {
+            assertTrue(filter.mightContain(String.format("%08d", i)));
+        }
+    }
+
+    @Test
+    @DisplayName("False positive rate is close to the configured probability when full")
+    void falsePositiveRate() {
+        // given
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.put(String.format("SC%06d", i));
+        }
+
+        // when
+        int falsePositives = 0;
+        for (int i = 0; i < INSERTIONS; i++) {
+            if (filter.mightContain(String.format("NI%06d", i))) {
+                falsePositives++;
+            }
+        }
+
+        // then
+        assertTrue(falsePositives < INSERTIONS * 0.02, "false positives: " + falsePositives);
+        assertEquals(0.01, filter.expectedFpp(), 0.005);
+    }
+
+    @Test
+    @DisplayName("An empty filter contains nothing")
+    void emptyFilter() {
+        // given
+        BloomFilter filter = new BloomFilter(100, 0.01);
+
+        // then
+        assertFalse(filter.mightContain("12345678"));
+        assertEquals(0.0, filter.expectedFpp());
+    }
+
+    @Test
+    @DisplayName("Invalid sizing is rejected")
+    void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1.0));
+    }
+}
@@ -0,0 +1,104 @@
+package uk.gov.companieshouse.exemptions.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions.KindEnum;
+import uk.gov.companieshouse.api.exemptions.ExemptionItem;
+import uk.gov.companieshouse.api.exemptions.Exemptions;
+import uk.gov.companieshouse.api.exemptions.PscExemptAsTradingOnRegulatedMarketItem;
+import uk.gov.companieshouse.api.exemptions.PscExemptAsTradingOnRegulatedMarketItem.ExemptionTypeEnum;
+
+class BsonJsonWriterTest {
+
+    private final JsonMapper mapper = JsonMapper.builder()
+            .changeDefaultPropertyInclusion(inclusion -> inclusion.withValueInclusion(JsonInclude.Include.NON_NULL))
+            .build();
+    private final ExemptionsWriteConverter writeConverter = new ExemptionsWriteConverter(new JsonMapper());
+    private final ExemptionsReadConverter readConverter = new ExemptionsReadConverter(JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build());
+
+    @Test
+    @DisplayName("Stored exemptions are written exactly as the mapped exemptions are serialised")
+    void writeStoredExemptions() {
+        // given
+        final var exemptions = getExemptionsData();
+        final var stored = RawBsonDocument.parse(writeConverter.convert(exemptions).toJson());
+
+        // when
+        final var actual = write(stored);
+
+        // then
+        assertArrayEquals(mapper.writeValueAsBytes(exemptions), actual);
+    }
+
+    @Test
+    @DisplayName("Dates stored as BSON dates are written as the mapped exemptions read them")
+    void writeLegacyDates() {
+        // given
+        final var item = new Document("exempt_from", Date.from(Instant.parse("2022-01-01T23:30:00Z")))
+                .append("exempt_to", null);
+        final var document = new Document("exemptions", new Document("psc_exempt_as_trading_on_regulated_market",
+                new Document("items", List.of(item))
+                        .append("exemption_type", "psc_exempt_as_trading_on_regulated_market")));
+        final var stored = new RawBsonDocument(document, new DocumentCodec());
+        final var expected = mapper.writeValueAsString(readConverter.convert(document));
+
+        // when
+        final var actual = write(stored);
+
+        // then
+        assertEquals(mapper.readTree(expected), mapper.readTree(actual));
+    }
+
+    @Test
+    @DisplayName("Unexpected BSON types are rejected")
+    void writeUnexpectedType() {
+        // given
+        final var stored = new RawBsonDocument(new Document("id", new ObjectId()), new DocumentCodec());
+
+        // when
+
+        // then
+        assertThrows(IllegalStateException.class, () -> write(stored));
+    }
+
+    private byte[] write(BsonDocument document) {
+        final var outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.createGenerator(outputStream)) {
+            BsonJsonWriter.write(document, generator);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static CompanyExemptions getExemptionsData() {
+        final var exemptionsData = new CompanyExemptions();
+        exemptionsData.setKind(KindEnum.EXEMPTIONS);
+        exemptionsData.setEtag("etag");
+        final var exemptions = new Exemptions();
+        exemptions.setPscExemptAsTradingOnRegulatedMarket(new PscExemptAsTradingOnRegulatedMarketItem(
+                List.of(new ExemptionItem(LocalDate.of(2022, 1, 1))),
+                ExemptionTypeEnum.PSC_EXEMPT_AS_TRADING_ON_REGULATED_MARKET));
+        exemptionsData.setExemptions(exemptions);
+        return exemptionsData;
+    }
+}
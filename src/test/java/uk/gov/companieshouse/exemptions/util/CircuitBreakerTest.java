@@ -0,0 +1,172 @@
+package uk.gov.companieshouse.exemptions.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.exemptions.util.CircuitBreaker.State;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+    private static final Duration HALF_OPEN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2024-02-19T12:00:00Z"));
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(4, 4, 0.5, OPEN_DURATION, 2,
+            HALF_OPEN_TIMEOUT, now::get);
+
+    @Test
+    @DisplayName("The circuit stays closed until the minimum number of calls is recorded")
+    void staysClosedBelowMinimumCalls() {
+        // when
+        call(false);
+        call(false);
+        call(false);
+
+        // then
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+        assertNotEquals(CircuitBreaker.REFUSED, circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("The circuit opens at the failure rate threshold and refuses calls while open")
+    void opensAtThreshold() {
+        // when
+        call(false);
+        call(false);
+        call(true);
+        call(true);
+
+        // then
+        assertEquals(State.OPEN, circuitBreaker.getState());
+        assertEquals(CircuitBreaker.REFUSED, circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Only the most recent calls count towards the failure rate")
+    void slidingWindow() {
+        // when
+        call(true);
+        call(false);
+        call(false);
+        call(false);
+        call(true);
+
+        // then
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("After the open duration, successful probes close the circuit")
+    void halfOpenCloses() {
+        // given
+        open();
+        now.set(now.get().plus(OPEN_DURATION));
+
+        // when
+        long first = circuitBreaker.tryAcquire();
+        long second = circuitBreaker.tryAcquire();
+        long third = circuitBreaker.tryAcquire();
+        circuitBreaker.onSuccess(first);
+        circuitBreaker.onSuccess(second);
+
+        // then
+        assertNotEquals(CircuitBreaker.REFUSED, first);
+        assertNotEquals(CircuitBreaker.REFUSED, second);
+        assertEquals(CircuitBreaker.REFUSED, third);
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("A failed probe opens the circuit again")
+    void halfOpenReopens() {
+        // given
+        open();
+        now.set(now.get().plus(OPEN_DURATION));
+
+        // when
+        circuitBreaker.onFailure(acquire());
+
+        // then
+        assertEquals(State.OPEN, circuitBreaker.getState());
+        assertEquals(CircuitBreaker.REFUSED, circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("An ignored probe hands its permit back")
+    void halfOpenIgnored() {
+        // given
+        open();
+        now.set(now.get().plus(OPEN_DURATION));
+        acquire();
+        long ignored = acquire();
+
+        // when
+        circuitBreaker.onIgnored(ignored);
+
+        // then
+        assertNotEquals(CircuitBreaker.REFUSED, circuitBreaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("A call admitted while closed does not count towards closing a half-open circuit")
+    void outcomeOfEarlierStateIgnored() {
+        // given
+        long slow = acquire();
+        open();
+        now.set(now.get().plus(OPEN_DURATION));
+        long probe = acquire();
+
+        // when
+        circuitBreaker.onSuccess(slow);
+        circuitBreaker.onSuccess(probe);
+
+        // then
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("Probes that do not all succeed within the half-open timeout open the circuit again")
+    void halfOpenTimesOut() {
+        // given
+        open();
+        now.set(now.get().plus(OPEN_DURATION));
+        long first = acquire();
+        acquire();
+        circuitBreaker.onSuccess(first);
+
+        // when
+        now.set(now.get().plus(HALF_OPEN_TIMEOUT));
+
+        // then
+        assertEquals(State.OPEN, circuitBreaker.getState());
+        assertEquals(CircuitBreaker.REFUSED, circuitBreaker.tryAcquire());
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            call(true);
+        }
+        assertEquals(State.OPEN, circuitBreaker.getState());
+    }
+
+    private long acquire() {
+        long permit = circuitBreaker.tryAcquire();
+        assertNotEquals(CircuitBreaker.REFUSED, permit);
+        return permit;
+    }
+
+    private void call(boolean failed) {
+        long permit = acquire();
+        if (failed) {
+            circuitBreaker.onFailure(permit);
+        } else {
+            circuitBreaker.onSuccess(permit);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package uk.gov.companieshouse.exemptions.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class DateUtilsTest {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSSSSS");
+
+    @ParameterizedTest
+    @ValueSource(strings = {"20240219123045999999", "19700101000000000000", "20240229235959000001",
+            "19691231235959999999", "00010301000000000000", "99991231235959999999"})
+    @DisplayName("delta_at is converted to the same epoch microseconds as a formatter would give")
+    void deltaAtMicros(String deltaAt) {
+        // given
+        OffsetDateTime expected = LocalDateTime.parse(deltaAt, FORMATTER).atOffset(ZoneOffset.UTC);
+
+        // when
+        long actual = DateUtils.deltaAtMicros(deltaAt);
+
+        // then
+        assertEquals(ChronoUnit.MICROS.between(OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), expected),
+                actual);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "2024021912304599999", "202402191230459999990", "2024021912304599999X",
+            "20241319123045999999", "20230229123045999999", "20240219243045999999", "00000101000000000000"})
+    @DisplayName("Invalid delta_at is rejected")
+    void deltaAtMicrosInvalid(String deltaAt) {
+        assertThrows(IllegalArgumentException.class, () -> DateUtils.deltaAtMicros(deltaAt));
+    }
+
+    @Test
+    @DisplayName("Staleness is decided on the numeric delta_at when the document has one")
+    void isDeltaStale() {
+        long request = DateUtils.deltaAtMicros("20240219123045999998");
+
+        assertTrue(DateUtils.isDeltaStale(request, request + 1, null));
+        assertFalse(DateUtils.isDeltaStale(request, request, null));
+        assertTrue(DateUtils.isDeltaStale(request, null, "20240219123045999999"));
+        assertFalse(DateUtils.isDeltaStale(request, null, ""));
+    }
+}
@@ -1,5 +1,6 @@
 package uk.gov.companieshouse.exemptions.util;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -19,6 +20,7 @@ import java.util.Collections;
 import java.util.List;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
 import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
 import uk.gov.companieshouse.api.exemptions.DiclosureTransparencyRulesChapterFiveAppliesItem;
 import uk.gov.companieshouse.api.exemptions.ExemptionItem;
@@ -38,7 +40,7 @@ class ExemptionsMapperTest {
     private static final String COMPANY_NUMBER = "123456789";
     private static final LocalDate DATE = LocalDate.of(2022, 11, 3);
 
-    private final ExemptionsMapper mapper = new ExemptionsMapper();
+    private final ExemptionsMapper mapper = new ExemptionsMapper(new ExemptionsRenderer(new JsonMapper(), false, false));
 
     @Test
     @DisplayName("Test should successfully map an InternalExemptionsApi to a CompanyExemptionsDocument")
@@ -72,6 +74,33 @@ class ExemptionsMapperTest {
         assertEquals(expectedData.getLinks(), document.getData().getLinks());
         assertTrue(LocalDateTime.now().toEpochSecond(ZoneOffset.MIN)
                 - document.getUpdated().at().toEpochSecond(ZoneOffset.MIN) < 2);
+        assertNull(document.getRendered());
+        assertEquals(DateUtils.deltaAtMicros(document.getDeltaAt()), document.getDeltaAtMicros());
+    }
+
+    @Test
+    @DisplayName("Test should render the response body of the mapped document when rendering is enabled")
+    void mapToRenderedCompanyExemptionsDocument() {
+        // Given
+        final var jsonMapper = new JsonMapper();
+        final var renderingMapper = new ExemptionsMapper(new ExemptionsRenderer(jsonMapper, true, false));
+
+        ExemptionsUpdateData external = new ExemptionsUpdateData();
+        external.setExemptions(getExemptions());
+
+        InternalData internal = new InternalData();
+        internal.setDeltaAt(OffsetDateTime.of(2020, 1, 1, 1, 1, 1, 1000, ZoneOffset.MIN));
+
+        InternalExemptionsApi requestBody = new InternalExemptionsApi();
+        requestBody.setInternalData(internal);
+        requestBody.setExternalData(external);
+
+        // When
+        CompanyExemptionsDocument document = renderingMapper.map(COMPANY_NUMBER, requestBody);
+
+        // Then
+        assertArrayEquals(jsonMapper.writeValueAsBytes(document.getData()), document.getRendered());
+        assertEquals(ExemptionsRenderer.IDENTITY, document.getRenderedEncoding());
     }
     private Exemptions getExemptions() {
         ExemptionItem exemptionItem = new ExemptionItem();
@@ -4,6 +4,10 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
 import org.bson.Document;
 import org.junit.jupiter.api.Test;
 import tools.jackson.databind.json.JsonMapper;
@@ -26,6 +30,25 @@ class ExemptionsReadConverterTest {
         assertEquals(KindEnum.EXEMPTIONS, actual.getKind());
     }
 
+    @Test
+    void convertNestedDocumentWithDatesToCompanyExemptions() {
+        // given
+        final var item = new Document("exempt_from", "2018-12-19")
+                .append("exempt_to", Date.from(Instant.parse("2022-12-19T00:00:00Z")));
+        final var source = new Document("kind", "exemptions")
+                .append("exemptions", new Document("psc_exempt_as_trading_on_regulated_market",
+                        new Document("items", List.of(item))
+                                .append("exemption_type", "psc-exempt-as-trading-on-regulated-market")));
+
+        // when
+        final var actual = converter.convert(source);
+
+        // then
+        final var items = actual.getExemptions().getPscExemptAsTradingOnRegulatedMarket().getItems();
+        assertEquals(LocalDate.of(2018, 12, 19), items.get(0).getExemptFrom());
+        assertEquals(LocalDate.of(2022, 12, 19), items.get(0).getExemptTo());
+    }
+
     @Test
     void throwRuntimeExceptionWhenNullIsPassedIn() {
         // given
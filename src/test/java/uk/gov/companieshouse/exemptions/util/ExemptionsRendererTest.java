@@ -0,0 +1,90 @@
+package uk.gov.companieshouse.exemptions.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
+import uk.gov.companieshouse.api.exemptions.CompanyExemptions.KindEnum;
+import uk.gov.companieshouse.exemptions.model.CompanyExemptionsDocument;
+
+class ExemptionsRendererTest {
+
+    private final JsonMapper mapper = new JsonMapper();
+
+    @Test
+    @DisplayName("Rendering is skipped when disabled")
+    void renderDisabled() {
+        // given
+        final var renderer = new ExemptionsRenderer(mapper, false, true);
+
+        // when
+        final var actual = renderer.render(getDocument());
+
+        // then
+        assertNull(actual.getRendered());
+        assertNull(actual.getRenderedEncoding());
+    }
+
+    @Test
+    @DisplayName("Data is rendered as the JSON response body")
+    void renderIdentity() {
+        // given
+        final var renderer = new ExemptionsRenderer(mapper, true, false);
+        final var document = getDocument();
+
+        // when
+        final var actual = renderer.render(document);
+
+        // then
+        assertArrayEquals(mapper.writeValueAsBytes(document.getData()), actual.getRendered());
+        assertEquals(ExemptionsRenderer.IDENTITY, actual.getRenderedEncoding());
+    }
+
+    @Test
+    @DisplayName("Data is rendered gzip compressed and written as stored when gzip is accepted")
+    void renderGzip() throws IOException {
+        // given
+        final var renderer = new ExemptionsRenderer(mapper, true, true);
+        final var document = renderer.render(getDocument());
+        final var outputStream = new ByteArrayOutputStream();
+
+        // when
+        ExemptionsRenderer.write(document, true, outputStream);
+
+        // then
+        assertEquals(ExemptionsRenderer.GZIP, document.getRenderedEncoding());
+        assertArrayEquals(document.getRendered(), outputStream.toByteArray());
+        try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            assertArrayEquals(mapper.writeValueAsBytes(document.getData()), inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    @DisplayName("A gzip rendering is decompressed when gzip is not accepted")
+    void writeDecompressed() throws IOException {
+        // given
+        final var renderer = new ExemptionsRenderer(mapper, true, true);
+        final var document = renderer.render(getDocument());
+        final var outputStream = new ByteArrayOutputStream();
+
+        // when
+        ExemptionsRenderer.write(document, false, outputStream);
+
+        // then
+        assertArrayEquals(mapper.writeValueAsBytes(document.getData()), outputStream.toByteArray());
+    }
+
+    private static CompanyExemptionsDocument getDocument() {
+        return new CompanyExemptionsDocument()
+                .setId("12345678")
+                .setData(new CompanyExemptions().kind(KindEnum.EXEMPTIONS).etag("etag"));
+    }
+}
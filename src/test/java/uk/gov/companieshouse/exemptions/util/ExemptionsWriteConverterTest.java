@@ -1,13 +1,21 @@
 package uk.gov.companieshouse.exemptions.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.LocalDate;
+import java.util.List;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
 import tools.jackson.databind.json.JsonMapper;
 import uk.gov.companieshouse.api.exemptions.CompanyExemptions;
 import uk.gov.companieshouse.api.exemptions.CompanyExemptions.KindEnum;
+import uk.gov.companieshouse.api.exemptions.ExemptionItem;
+import uk.gov.companieshouse.api.exemptions.Exemptions;
+import uk.gov.companieshouse.api.exemptions.PscExemptAsTradingOnRegulatedMarketItem;
+import uk.gov.companieshouse.api.exemptions.PscExemptAsTradingOnRegulatedMarketItem.ExemptionTypeEnum;
 
 class ExemptionsWriteConverterTest {
 
@@ -28,6 +36,25 @@ class ExemptionsWriteConverterTest {
         assertTrue(json.contains(KindEnum.EXEMPTIONS.getValue()));
     }
 
+    @Test
+    void convertNestedExemptionsRoundTrip() {
+        // given
+        final var items = new Exemptions();
+        items.setPscExemptAsTradingOnRegulatedMarket(new PscExemptAsTradingOnRegulatedMarketItem(
+                List.of(new ExemptionItem(LocalDate.of(2022, 1, 1))),
+                ExemptionTypeEnum.PSC_EXEMPT_AS_TRADING_ON_REGULATED_MARKET));
+        final var exemptions = new CompanyExemptions();
+        exemptions.setKind(KindEnum.EXEMPTIONS);
+        exemptions.setExemptions(items);
+
+        // when
+        final var actual = converter.convert(exemptions);
+
+        // then
+        final var readBack = new ExemptionsReadConverter(new JsonMapper()).convert(new Document(actual.toMap()));
+        assertEquals(exemptions, readBack);
+    }
+
     @Test
     void throwRuntimeExceptionWhenNullIsPassedIn() {
         // given
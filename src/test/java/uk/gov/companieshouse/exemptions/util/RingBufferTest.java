@@ -0,0 +1,87 @@
+package uk.gov.companieshouse.exemptions.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RingBufferTest {
+
+    @Test
+    @DisplayName("Capacity is rounded up to a power of two")
+    void capacity() {
+        assertEquals(8, new RingBuffer<>(5).capacity());
+        assertEquals(8, new RingBuffer<>(8).capacity());
+    }
+
+    @Test
+    @DisplayName("Elements are polled in the order they were offered, and a full buffer refuses more")
+    void offerAndPoll() {
+        // given
+        RingBuffer<Integer> buffer = new RingBuffer<>(2);
+
+        // when
+        boolean first = buffer.offer(1);
+        boolean second = buffer.offer(2);
+        boolean full = buffer.offer(3);
+
+        // then
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(full);
+        assertEquals(2, buffer.size());
+        assertEquals(1, buffer.poll());
+        assertTrue(buffer.offer(3));
+        assertEquals(2, buffer.poll());
+        assertEquals(3, buffer.poll());
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    @DisplayName("Every element offered by concurrent producers is polled exactly once")
+    void concurrentProducers() throws Exception {
+        // given
+        RingBuffer<Integer> buffer = new RingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 10_000;
+        List<CompletableFuture<Void>> offers = new ArrayList<>();
+        Set<Integer> polled = new HashSet<>();
+
+        // when
+        try (var executor = Executors.newFixedThreadPool(producers)) {
+            for (int p = 0; p < producers; p++) {
+                int first = p * perProducer;
+                offers.add(CompletableFuture.runAsync(() -> {
+                    for (int i = first; i < first + perProducer; i++) {
+                        while (!buffer.offer(i)) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                }, executor));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (polled.size() < producers * perProducer && System.nanoTime() < deadline) {
+                Integer element = buffer.poll();
+                if (element != null) {
+                    assertTrue(polled.add(element));
+                }
+            }
+            CompletableFuture.allOf(offers.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        }
+
+        // then
+        assertEquals(producers * perProducer, polled.size());
+        assertNull(buffer.poll());
+    }
+}
@@ -0,0 +1,137 @@
+package uk.gov.companieshouse.exemptions.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    @DisplayName("Concurrent calls for the same key share one call and its result")
+    void coalescesConcurrentCalls() throws Exception {
+        // given
+        Object result = new Object();
+        CompletableFuture<Object> leader = CompletableFuture.supplyAsync(
+                () -> singleFlight.execute("key", () -> blockingCall(result)));
+        started.await(5, TimeUnit.SECONDS);
+
+        // when
+        CompletableFuture<Object> follower = CompletableFuture.supplyAsync(
+                () -> singleFlight.execute("key", () -> blockingCall(new Object())));
+        awaitCoalesced(1);
+        release.countDown();
+
+        // then
+        assertSame(result, leader.get(5, TimeUnit.SECONDS));
+        assertSame(result, follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    @DisplayName("Callers that joined a failing call receive its exception")
+    void sharesException() throws Exception {
+        // given
+        CompletableFuture<Object> leader = CompletableFuture.supplyAsync(
+                () -> singleFlight.execute("key", () -> {
+                    blockingCall(null);
+                    throw new IllegalStateException("not found");
+                }));
+        started.await(5, TimeUnit.SECONDS);
+
+        // when
+        CompletableFuture<Object> follower = CompletableFuture.supplyAsync(
+                () -> singleFlight.execute("key", Object::new));
+        awaitCoalesced(1);
+        release.countDown();
+
+        // then
+        Exception actual = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertEquals(IllegalStateException.class, actual.getCause().getClass());
+        assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Callers that joined a call failing with an error receive the error, and are not left waiting")
+    void sharesError() throws Exception {
+        // given
+        CompletableFuture<Object> leader = CompletableFuture.supplyAsync(
+                () -> singleFlight.execute("key", () -> {
+                    blockingCall(null);
+                    throw new OutOfMemoryError("rendering");
+                }));
+        started.await(5, TimeUnit.SECONDS);
+
+        // when
+        CompletableFuture<Object> follower = CompletableFuture.supplyAsync(
+                () -> singleFlight.execute("key", Object::new));
+        awaitCoalesced(1);
+        release.countDown();
+
+        // then
+        Exception actual = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertEquals(OutOfMemoryError.class, actual.getCause().getClass());
+        assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertEquals("fresh", singleFlight.execute("key", () -> "fresh"));
+    }
+
+    @Test
+    @DisplayName("Calls after a forgotten call start a new call")
+    void forgetStartsNewCall() throws Exception {
+        // given
+        CompletableFuture<Object> leader = CompletableFuture.supplyAsync(
+                () -> singleFlight.execute("key", () -> blockingCall(new Object())));
+        started.await(5, TimeUnit.SECONDS);
+
+        // when
+        singleFlight.forget("key");
+        Object actual = singleFlight.execute("key", () -> "fresh");
+        release.countDown();
+        leader.get(5, TimeUnit.SECONDS);
+
+        // then
+        assertEquals("fresh", actual);
+        assertEquals(0, singleFlight.coalescedCount());
+    }
+
+    @Test
+    @DisplayName("Sequential calls are not coalesced")
+    void sequentialCalls() {
+        // when
+        singleFlight.execute("key", () -> calls.incrementAndGet());
+        singleFlight.execute("key", () -> calls.incrementAndGet());
+
+        // then
+        assertEquals(2, calls.get());
+        assertEquals(0, singleFlight.coalescedCount());
+    }
+
+    private Object blockingCall(Object result) {
+        calls.incrementAndGet();
+        started.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.coalescedCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}